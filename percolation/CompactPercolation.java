@@ -0,0 +1,340 @@
+/******************************************************************************
+ *  Compilation:  javac CompactPercolation.java
+ *  Execution:    none
+ *  Dependencies: java.lang.IllegalArgumentException
+ *                java.nio.ByteBuffer
+ *                java.nio.IntBuffer
+ *                java.nio.channels.FileChannel
+ *
+ *  A percolation data type with the same API as Percolation, laid out for
+ *  very large lattices (10^8 to 10^9 sites).
+ *
+ *  The open flags are a bitset on a long array, and the union-find parent
+ *  links live off-heap, either in direct buffers or in a memory-mapped
+ *  scratch file, so the grid needs about 1 bit of heap per site.
+ *
+ *  The parent links take 4 bytes per site off the heap. Direct buffers
+ *  count against -XX:MaxDirectMemorySize, which defaults to -Xmx, so the
+ *  direct buffer constructor needs that flag set to at least 4 * n^2
+ *  bytes, for example
+ *
+ *      java -Xmx256m -XX:MaxDirectMemorySize=8g ...
+ *
+ *  for n = 40000. The memory-mapped file is not limited by either flag,
+ *  only by disk space and address space, and it is the one to use for
+ *  large n.
+ *
+ *  Author: AlvinZSJ
+ ******************************************************************************/
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class CompactPercolation {
+
+    // flags kept in the root word of a component
+    private static final int TOP = 1;
+    private static final int BOTTOM = 2;
+    private static final int SPANNING = TOP | BOTTOM;
+
+    // one buffer holds 2^28 parent links (1 GB)
+    private static final int CHUNK_BITS = 28;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    // number of sites
+    private final int gridCount;
+    private final int n;
+
+    /* Union-find parent links, split over several int buffers since one
+    * buffer is limited to 2 GB.
+    * A non-negative value is the parent of the site. A root stores
+    * ~(rank << 2 | flags), so it is negative and keeps the top and bottom
+    * flags of the component in the same word. Union by rank keeps the rank
+    * below 32, which is what leaves room for the flags.
+    */
+    private final IntBuffer[] parent;
+
+    // Open state of the sites, one bit per site
+    private final long[] open;
+
+    // Whether some component touches both the top and the bottom row
+    private boolean percolated = false;
+
+    // Record the number of opened sites
+    private int numOpenSites = 0;
+
+    /**
+     * Create n-by-n grid, with all sites blocked,
+     * the parent links are kept in direct buffers of 4 * n^2 bytes,
+     * which must fit in -XX:MaxDirectMemorySize
+     * @param n size of grids
+     * @throws OutOfMemoryError if the direct memory limit is too small,
+     *         use CompactPercolation(n, file) instead
+     */
+    public CompactPercolation(int n) {
+        this.n = checkSize(n);
+        gridCount = n * n;
+
+        parent = new IntBuffer[chunkCount(gridCount)];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = ByteBuffer.allocateDirect(chunkBytes(i))
+                                  .order(ByteOrder.nativeOrder())
+                                  .asIntBuffer();
+        }
+
+        open = new long[(gridCount + 63) >>> 6];
+    }
+
+    /**
+     * Create n-by-n grid, with all sites blocked,
+     * the parent links are kept in a memory-mapped scratch file,
+     * the recommended mode for large n
+     * @param n size of grids
+     * @param file scratch file, created or overwritten, and removed from
+     *             the directory again before the constructor returns; its
+     *             disk space is freed once the grid is garbage collected
+     */
+    public CompactPercolation(int n, Path file) {
+        this.n = checkSize(n);
+        gridCount = n * n;
+
+        if (file == null)
+            throw new IllegalArgumentException("File is null!");
+
+        parent = new IntBuffer[chunkCount(gridCount)];
+        try (FileChannel channel = FileChannel.open(file,
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING,
+                                                    StandardOpenOption.DELETE_ON_CLOSE)) {
+            // mappings stay valid after the channel is closed and the
+            // file is deleted, they keep the data until they are unmapped
+            for (int i = 0; i < parent.length; i++) {
+                parent[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                                        (long) i << (CHUNK_BITS + 2),
+                                        chunkBytes(i))
+                                   .order(ByteOrder.nativeOrder())
+                                   .asIntBuffer();
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        open = new long[(gridCount + 63) >>> 6];
+    }
+
+    /**
+     * Helper method, validate the grid size
+     * @param n size of grids
+     * @return n
+     */
+    private static int checkSize(int n) {
+        if (n <= 0 || (long) n * n > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("n is out of boundary!");
+        return n;
+    }
+
+    /**
+     * @param count number of sites
+     * @return number of buffers for the parent links
+     */
+    private static int chunkCount(int count) {
+        return (int) (((long) count + CHUNK_MASK) >>> CHUNK_BITS);
+    }
+
+    /**
+     * @param chunk index of buffer
+     * @return byte size of the buffer
+     */
+    private int chunkBytes(int chunk) {
+        long ints = Math.min(gridCount - ((long) chunk << CHUNK_BITS), 1L << CHUNK_BITS);
+        return (int) (ints << 2);
+    }
+
+    /**
+     * @param i index in grids
+     * @return parent link of site i
+     */
+    private int parentOf(int i) {
+        return parent[i >>> CHUNK_BITS].get(i & CHUNK_MASK);
+    }
+
+    /**
+     * @param i index in grids
+     * @param value new parent link of site i
+     */
+    private void setParent(int i, int value) {
+        parent[i >>> CHUNK_BITS].put(i & CHUNK_MASK, value);
+    }
+
+    /**
+     * @param i index in grids
+     * @return whether site i is open
+     */
+    private boolean openAt(int i) {
+        return (open[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Helper method, to map from 2D to 1D indices
+     * @param row row number
+     * @param col column number
+     * @return index in grids
+     */
+    private int rcToIndex(int row, int col) {
+        if (row <= 0 || row > n)
+            throw new IllegalArgumentException("Row is out of boundary!");
+
+        if (col <= 0 || col > n)
+            throw new IllegalArgumentException("Col is out of boundary!");
+
+        return (row - 1) * n + (col - 1);
+    }
+
+    /**
+     * Open site (row, col) if it is not open already
+     * @param row row of site
+     * @param col column of site
+     */
+    public void open(int row, int col) {
+        openIndex(rcToIndex(row, col));
+    }
+
+    /**
+     * Open a site by its linear index if it is not open already,
+     * the site (row, col) has the linear index (row - 1) * n + (col - 1)
+     * @param site linear index of site, from 0 to n * n - 1
+     */
+    public void open(int site) {
+        if (site < 0 || site >= gridCount)
+            throw new IllegalArgumentException("Site is out of boundary!");
+
+        openIndex(site);
+    }
+
+    /**
+     * Helper method, open the site at a validated index in grids
+     * @param index index in grids
+     */
+    private void openIndex(int index) {
+
+        if (openAt(index)) return;
+
+        int flags = 0;
+        if (index < n)              flags |= TOP;
+        if (index >= gridCount - n) flags |= BOTTOM;
+
+        // a new root of rank 0
+        setParent(index, ~flags);
+        open[index >>> 6] |= 1L << index;
+        ++numOpenSites;
+
+        // a single site spans the grid when n is 1
+        if (flags == SPANNING)
+            percolated = true;
+
+        // zero based column of the site
+        int col = index % n;
+
+        if (index >= n && openAt(index - n))
+            union(index - n, index);
+
+        if (index < gridCount - n && openAt(index + n))
+            union(index + n, index);
+
+        if (col > 0 && openAt(index - 1))
+            union(index - 1, index);
+
+        if (col < n - 1 && openAt(index + 1))
+            union(index + 1, index);
+    }
+
+    /**
+     * Find the root of a site, halving the path on the way
+     * @param p index in grids
+     * @return root of the component
+     */
+    private int find(int p) {
+        int q;
+        while ((q = parentOf(p)) >= 0) {
+            int g = parentOf(q);
+            if (g < 0) return q;
+            setParent(p, g);
+            p = g;
+        }
+        return p;
+    }
+
+    /**
+     * Link the lower ranked root under the other one,
+     * and merge the top and bottom flags into the new root
+     * @param p index in grids
+     * @param q index in grids
+     */
+    private void union(int p, int q) {
+        int i = find(p);
+        int j = find(q);
+        if (i == j) return;
+
+        int rootI = ~parentOf(i);
+        int rootJ = ~parentOf(j);
+        int rankI = rootI >>> 2;
+        int rankJ = rootJ >>> 2;
+
+        if (rankI < rankJ) {
+            int swap = i;
+            i = j;
+            j = swap;
+        }
+
+        int rank = rankI == rankJ ? rankI + 1 : Math.max(rankI, rankJ);
+        int flags = (rootI | rootJ) & SPANNING;
+
+        setParent(i, ~(rank << 2 | flags));
+        setParent(j, i);
+
+        if (flags == SPANNING)
+            percolated = true;
+    }
+
+    /**
+     * @param row row of site
+     * @param col column of site
+     * @return Whether site (row, col) is open
+     */
+    public boolean isOpen(int row, int col) {
+        return openAt(rcToIndex(row, col));
+    }
+
+    /**
+     * @param row row of site
+     * @param col column of site
+     * @return Whether site (row, col) is full
+     */
+    public boolean isFull(int row, int col) {
+        int index = rcToIndex(row, col);
+        return openAt(index) && (~parentOf(find(index)) & TOP) != 0;
+    }
+
+    /**
+     * @return number of open sites
+     */
+    public int numberOfOpenSites() {
+        return numOpenSites;
+    }
+
+    /**
+     * @return Whether the system is percolated
+     */
+    public boolean percolates() {
+        return percolated;
+    }
+}
@@ -0,0 +1,268 @@
+/******************************************************************************
+ *  Compilation:  javac ConcurrentPercolation.java
+ *  Execution:    none
+ *  Dependencies: java.lang.IllegalArgumentException
+ *                java.util.concurrent.atomic.AtomicIntegerArray
+ *                java.util.concurrent.atomic.LongAdder
+ *
+ *  A thread-safe version of Percolation, where sites can be opened from
+ *  many threads at once without locks.
+ *
+ *  The union-find links are set with compare-and-set. A root is linked
+ *  under the other root of higher priority, where the priority is a fixed
+ *  pseudo-random permutation of the indices, so the trees stay shallow
+ *  without a size field that would need to be updated atomically.
+ *  find() only halves paths with a single compare-and-set per step and
+ *  never retries, and links only point to roots of higher priority, so
+ *  every find finishes in a bounded number of steps (wait-free).
+ *
+ *  isFull() and percolates() reflect every open() that has returned.
+ *  While opens are in progress they may still miss a connection that is
+ *  being made, and numberOfOpenSites() is exact only when no open() runs.
+ *
+ *  Author: AlvinZSJ
+ ******************************************************************************/
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConcurrentPercolation {
+
+    // state bits of a site
+    private static final int OPEN = 1;
+    private static final int TOP = 2;
+    private static final int BOTTOM = 4;
+    private static final int SPANNING = TOP | BOTTOM;
+
+    // number of sites
+    private final int gridCount;
+    private final int n;
+
+    /* Union-find parent links, stored plus one,
+    * so the initial value 0 marks a root and no initialization is needed.
+    */
+    private final AtomicIntegerArray parent;
+
+    /* Open state of the sites, and on roots the flags of the component.
+    * A thread that adds flags to a root checks afterwards that it is still
+    * a root, and a thread that links a root reads its flags afterwards, so
+    * the flags of a component are never lost by a concurrent union.
+    */
+    private final AtomicIntegerArray state;
+
+    // Whether some component touches both the top and the bottom row
+    private volatile boolean percolated = false;
+
+    // Record the number of opened sites, striped to avoid contention
+    private final LongAdder numOpenSites = new LongAdder();
+
+    /**
+     * Create n-by-n grid, with all sites blocked
+     * @param n size of grids
+     */
+    public ConcurrentPercolation(int n) {
+
+        if (n <= 0 || (long) n * n > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("n is out of boundary!");
+
+        this.n = n;
+        gridCount = n * n;
+
+        parent = new AtomicIntegerArray(gridCount);
+        state = new AtomicIntegerArray(gridCount);
+    }
+
+    /**
+     * Helper method, to map from 2D to 1D indices
+     * @param row row number
+     * @param col column number
+     * @return index in grids
+     */
+    private int rcToIndex(int row, int col) {
+        if (row <= 0 || row > n)
+            throw new IllegalArgumentException("Row is out of boundary!");
+
+        if (col <= 0 || col > n)
+            throw new IllegalArgumentException("Col is out of boundary!");
+
+        return (row - 1) * n + (col - 1);
+    }
+
+    /**
+     * Open site (row, col) if it is not open already
+     * @param row row of site
+     * @param col column of site
+     */
+    public void open(int row, int col) {
+        openIndex(rcToIndex(row, col));
+    }
+
+    /**
+     * Open a site by its linear index if it is not open already,
+     * the site (row, col) has the linear index (row - 1) * n + (col - 1)
+     * @param site linear index of site, from 0 to n * n - 1
+     */
+    public void open(int site) {
+        if (site < 0 || site >= gridCount)
+            throw new IllegalArgumentException("Site is out of boundary!");
+
+        openIndex(site);
+    }
+
+    /**
+     * Helper method, open the site at a validated index in grids
+     * @param index index in grids
+     */
+    private void openIndex(int index) {
+
+        int flags = OPEN;
+        if (index < n)              flags |= TOP;
+        if (index >= gridCount - n) flags |= BOTTOM;
+
+        // only the thread which opens the site joins it with its neighbors
+        if (!state.compareAndSet(index, 0, flags)) return;
+        numOpenSites.increment();
+
+        // a single site spans the grid when n is 1
+        if ((flags & SPANNING) == SPANNING)
+            percolated = true;
+
+        /* A neighbor opened at the same time is seen by at least one of the
+        * two threads, since each sets its own state before reading the other.
+        */
+        int col = index % n;
+
+        if (index >= n && state.get(index - n) != 0)
+            union(index - n, index);
+
+        if (index < gridCount - n && state.get(index + n) != 0)
+            union(index + n, index);
+
+        if (col > 0 && state.get(index - 1) != 0)
+            union(index - 1, index);
+
+        if (col < n - 1 && state.get(index + 1) != 0)
+            union(index + 1, index);
+    }
+
+    /**
+     * @param i index in grids
+     * @return fixed pseudo-random priority of the site, a bijection of i
+     */
+    private static int priority(int i) {
+        i ^= i >>> 16;
+        i *= 0x85ebca6b;
+        i ^= i >>> 13;
+        i *= 0xc2b2ae35;
+        i ^= i >>> 16;
+        return i;
+    }
+
+    /**
+     * Find the root of a site, halving the path on the way
+     * @param p index in grids
+     * @return root of the component when it was read
+     */
+    private int find(int p) {
+        while (true) {
+            int q = parent.get(p) - 1;
+            if (q < 0) return p;
+
+            int g = parent.get(q) - 1;
+            if (g < 0) return q;
+
+            // a failed halving only means another thread moved the link up
+            parent.compareAndSet(p, q + 1, g + 1);
+            p = g;
+        }
+    }
+
+    /**
+     * Link the root of lower priority under the other one,
+     * and move its top and bottom flags to the new root
+     * @param p index in grids
+     * @param q index in grids
+     */
+    private void union(int p, int q) {
+        while (true) {
+            int i = find(p);
+            int j = find(q);
+            if (i == j) return;
+
+            if (priority(i) > priority(j)) {
+                int swap = i;
+                i = j;
+                j = swap;
+            }
+
+            if (parent.compareAndSet(i, 0, j + 1)) {
+                addFlags(j, state.get(i) & SPANNING);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Add flags to the root of a component, following the root upwards
+     * if it is linked under another root in the meantime
+     * @param root index in grids
+     * @param flags top and bottom flags
+     */
+    private void addFlags(int root, int flags) {
+        if (flags == 0) return;
+
+        while (true) {
+            int s;
+            do {
+                s = state.get(root);
+            } while ((s & flags) != flags && !state.compareAndSet(root, s, s | flags));
+
+            if (((s | flags) & SPANNING) == SPANNING)
+                percolated = true;
+
+            if (parent.get(root) == 0) return;
+            root = find(root);
+        }
+    }
+
+    /**
+     * @param row row of site
+     * @param col column of site
+     * @return Whether site (row, col) is open
+     */
+    public boolean isOpen(int row, int col) {
+        return state.get(rcToIndex(row, col)) != 0;
+    }
+
+    /**
+     * @param row row of site
+     * @param col column of site
+     * @return Whether site (row, col) is full
+     */
+    public boolean isFull(int row, int col) {
+        int index = rcToIndex(row, col);
+        if (state.get(index) == 0) return false;
+
+        while (true) {
+            int root = find(index);
+            if ((state.get(root) & TOP) != 0) return true;
+
+            // the flags may have moved on if the root was linked meanwhile
+            if (parent.get(root) == 0) return false;
+        }
+    }
+
+    /**
+     * @return number of open sites
+     */
+    public int numberOfOpenSites() {
+        return numOpenSites.intValue();
+    }
+
+    /**
+     * @return Whether the system is percolated
+     */
+    public boolean percolates() {
+        return percolated;
+    }
+}
@@ -0,0 +1,99 @@
+/******************************************************************************
+ *  Compilation:  javac CubicLattice.java
+ *  Execution:    none
+ *  Dependencies: Lattice.java
+ *
+ *  An L-by-L-by-L simple cubic lattice with 6-neighbor connectivity.
+ *
+ *  Site (x, y, z), each from 0 to L - 1, has the index (z * L + y) * L + x.
+ *  The system spans from the top layer z = 0 to the bottom layer z = L - 1.
+ *  A periodic lattice wraps around in x and y, so only the top and bottom
+ *  layers are open boundaries.
+ *
+ *  Author: AlvinZSJ
+ ******************************************************************************/
+
+public class CubicLattice implements Lattice {
+
+    private final int size;
+    private final int layer;
+    private final int siteCount;
+    private final boolean periodic;
+
+    /**
+     * Create an L-by-L-by-L lattice with open boundaries
+     * @param size size L of lattice
+     */
+    public CubicLattice(int size) {
+        this(size, false);
+    }
+
+    /**
+     * Create an L-by-L-by-L lattice
+     * @param size size L of lattice
+     * @param periodic whether x and y wrap around
+     */
+    public CubicLattice(int size, boolean periodic) {
+        if (size <= 0 || (long) size * size * size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Size is out of boundary!");
+
+        this.size = size;
+        this.layer = size * size;
+        this.siteCount = layer * size;
+        this.periodic = periodic;
+    }
+
+    @Override
+    public int siteCount() {
+        return siteCount;
+    }
+
+    /**
+     * Directions are +z, +y, +x, -z, -y and -x
+     * @return 6
+     */
+    @Override
+    public int degree() {
+        return 6;
+    }
+
+    @Override
+    public int neighbor(int site, int k) {
+        int y;
+        int x;
+        switch (k) {
+            case 0:
+                return site < siteCount - layer ? site + layer : -1;
+            case 1:
+                y = site / size % size;
+                if (y < size - 1) return site + size;
+                return periodic ? site - y * size : -1;
+            case 2:
+                x = site % size;
+                if (x < size - 1) return site + 1;
+                return periodic ? site - x : -1;
+            case 3:
+                return site >= layer ? site - layer : -1;
+            case 4:
+                y = site / size % size;
+                if (y > 0) return site - size;
+                return periodic ? site + layer - size : -1;
+            case 5:
+                x = site % size;
+                if (x > 0) return site - 1;
+                return periodic ? site + size - 1 : -1;
+            default:
+                throw new IllegalArgumentException("Direction is out of boundary!");
+        }
+    }
+
+    @Override
+    public boolean isTop(int site) {
+        return site < layer;
+    }
+
+    @Override
+    public boolean isBottom(int site) {
+        return site >= siteCount - layer;
+    }
+}
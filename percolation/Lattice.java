@@ -0,0 +1,47 @@
+/******************************************************************************
+ *  Compilation:  javac Lattice.java
+ *  Execution:    none
+ *  Dependencies: none
+ *
+ *  Topology of a lattice used by LatticePercolation.
+ *
+ *  Sites are numbered from 0 to siteCount() - 1 and the neighbors of a site
+ *  are computed arithmetically from its index, so a lattice holds no
+ *  per-site neighbor lists. The first half of the directions are the
+ *  "forward" ones, which also number the bonds: bond site * degree() / 2 + k
+ *  joins the site to neighbor(site, k).
+ *
+ *  Author: AlvinZSJ
+ ******************************************************************************/
+
+public interface Lattice {
+
+    /**
+     * @return number of sites
+     */
+    int siteCount();
+
+    /**
+     * @return number of neighbor directions of every site
+     */
+    int degree();
+
+    /**
+     * @param site index of site
+     * @param k direction, from 0 to degree() - 1
+     * @return index of the neighbor in direction k, -1 across an open boundary
+     */
+    int neighbor(int site, int k);
+
+    /**
+     * @param site index of site
+     * @return whether the site is on the top boundary
+     */
+    boolean isTop(int site);
+
+    /**
+     * @param site index of site
+     * @return whether the site is on the bottom boundary
+     */
+    boolean isBottom(int site);
+}
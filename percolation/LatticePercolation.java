@@ -0,0 +1,256 @@
+/******************************************************************************
+ *  Compilation:  javac LatticePercolation.java
+ *  Execution:    none
+ *  Dependencies: Lattice.java
+ *                java.lang.IllegalArgumentException
+ *
+ *  The percolation engine of Percolation on any Lattice topology, for
+ *  site percolation or bond percolation.
+ *
+ *  In site percolation the sites are opened and joined with their open
+ *  neighbors. In bond percolation every site is present and the bonds
+ *  between neighbors are opened.
+ *
+ *  Author: AlvinZSJ
+ ******************************************************************************/
+
+public class LatticePercolation {
+
+    // state bits of a site
+    private static final byte OPEN = 1;
+    private static final byte TOP = 2;
+    private static final byte BOTTOM = 4;
+    private static final byte SPANNING = TOP | BOTTOM;
+
+    private final Lattice lattice;
+    private final boolean bondPercolation;
+
+    // number of sites, neighbor directions and forward directions
+    private final int siteCount;
+    private final int degree;
+    private final int half;
+
+    // number of bonds which do not cross an open boundary
+    private final int bondCount;
+
+    // open bonds in bond percolation, one bit per bond
+    private final long[] bonds;
+
+    /* Union-find of the sites, as in Percolation.
+    * parent[i] is the parent of site i, or the negative size of the
+    * component if site i is a root.
+    */
+    private final int[] parent;
+
+    // open state of the sites, and top and bottom flags on the roots
+    private final byte[] state;
+
+    // number of opened sites or bonds when the system started to percolate
+    private int criticalIndex = -1;
+
+    // number of opened sites or bonds
+    private int numOpen = 0;
+
+    /**
+     * Create a lattice with all sites or all bonds blocked
+     * @param lattice topology of lattice
+     * @param bondPercolation true to open bonds, false to open sites
+     */
+    public LatticePercolation(Lattice lattice, boolean bondPercolation) {
+
+        if (lattice == null)
+            throw new IllegalArgumentException("Lattice is null!");
+
+        this.lattice = lattice;
+        this.bondPercolation = bondPercolation;
+
+        siteCount = lattice.siteCount();
+        degree = lattice.degree();
+        half = degree / 2;
+
+        parent = new int[siteCount];
+        state = new byte[siteCount];
+
+        if (!bondPercolation) {
+            bonds = null;
+            bondCount = 0;
+            return;
+        }
+
+        if ((long) siteCount * half > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Lattice has too many bonds!");
+
+        bonds = new long[(siteCount * half + 63) >>> 6];
+
+        // every site is a component of its own
+        int count = 0;
+        for (int i = 0; i < siteCount; i++) {
+            parent[i] = -1;
+            state[i] = flagsOf(i);
+
+            if ((state[i] & SPANNING) == SPANNING && criticalIndex < 0)
+                criticalIndex = 0;
+
+            for (int k = 0; k < half; k++) {
+                if (lattice.neighbor(i, k) >= 0) ++count;
+            }
+        }
+        bondCount = count;
+    }
+
+    /**
+     * @param site index of site
+     * @return open state with the top and bottom flags of the site
+     */
+    private byte flagsOf(int site) {
+        byte flags = OPEN;
+        if (lattice.isTop(site))    flags |= TOP;
+        if (lattice.isBottom(site)) flags |= BOTTOM;
+        return flags;
+    }
+
+    /**
+     * Open a site if it is not open already, only in site percolation
+     * @param site index of site
+     */
+    public void open(int site) {
+        if (bondPercolation)
+            throw new IllegalStateException("Sites are always open in bond percolation!");
+
+        if (site < 0 || site >= siteCount)
+            throw new IllegalArgumentException("Site is out of boundary!");
+
+        if (state[site] != 0) return;
+
+        byte flags = flagsOf(site);
+        parent[site] = -1;
+        state[site] = flags;
+        ++numOpen;
+
+        if ((flags & SPANNING) == SPANNING && criticalIndex < 0)
+            criticalIndex = numOpen;
+
+        for (int k = 0; k < degree; k++) {
+            int neighbor = lattice.neighbor(site, k);
+            if (neighbor >= 0 && state[neighbor] != 0)
+                union(neighbor, site);
+        }
+    }
+
+    /**
+     * Open a bond if it is not open already, only in bond percolation.
+     * Bond site * (degree / 2) + k joins the site to its neighbor in the
+     * forward direction k, bonds across an open boundary do not exist
+     * and opening them has no effect.
+     * @param bond index of bond
+     */
+    public void openBond(int bond) {
+        if (!bondPercolation)
+            throw new IllegalStateException("Bonds are not used in site percolation!");
+
+        if (bond < 0 || bond >= siteCount * half)
+            throw new IllegalArgumentException("Bond is out of boundary!");
+
+        if ((bonds[bond >>> 6] & (1L << bond)) != 0) return;
+
+        int site = bond / half;
+        int neighbor = lattice.neighbor(site, bond % half);
+        if (neighbor < 0) return;
+
+        bonds[bond >>> 6] |= 1L << bond;
+        ++numOpen;
+        union(neighbor, site);
+    }
+
+    /**
+     * Find the root of a site, halving the path on the way
+     * @param p index of site
+     * @return root of the component
+     */
+    private int find(int p) {
+        int q;
+        while ((q = parent[p]) >= 0) {
+            int g = parent[q];
+            if (g < 0) return q;
+            parent[p] = g;
+            p = g;
+        }
+        return p;
+    }
+
+    /**
+     * Link the smaller component under the larger one,
+     * and merge the top and bottom flags into the new root
+     * @param p index of site
+     * @param q index of site
+     */
+    private void union(int p, int q) {
+        int i = find(p);
+        int j = find(q);
+        if (i == j) return;
+
+        if (parent[i] > parent[j]) {
+            int swap = i;
+            i = j;
+            j = swap;
+        }
+
+        parent[i] += parent[j];
+        parent[j] = i;
+
+        byte flags = (byte) (state[i] | state[j]);
+        state[i] = flags;
+
+        if ((flags & SPANNING) == SPANNING && criticalIndex < 0)
+            criticalIndex = numOpen;
+    }
+
+    /**
+     * @param site index of site
+     * @return whether the site is open
+     */
+    public boolean isOpen(int site) {
+        if (site < 0 || site >= siteCount)
+            throw new IllegalArgumentException("Site is out of boundary!");
+
+        return state[site] != 0;
+    }
+
+    /**
+     * @param site index of site
+     * @return whether the site is connected to the top boundary
+     */
+    public boolean isFull(int site) {
+        return isOpen(site) && (state[find(site)] & TOP) != 0;
+    }
+
+    /**
+     * @return number of bonds which do not cross an open boundary,
+     *         0 in site percolation
+     */
+    public int bondCount() {
+        return bondCount;
+    }
+
+    /**
+     * @return number of opened sites, or opened bonds in bond percolation
+     */
+    public int numberOfOpened() {
+        return numOpen;
+    }
+
+    /**
+     * @return whether the system is percolated
+     */
+    public boolean percolates() {
+        return criticalIndex >= 0;
+    }
+
+    /**
+     * @return number of opened sites or bonds when the system started
+     *         to percolate, -1 if it does not percolate
+     */
+    public int criticalIndex() {
+        return criticalIndex;
+    }
+}
@@ -1,8 +1,7 @@
 /******************************************************************************
  *  Compilation:  javac Percolation.java
  *  Execution:    java Percolation
- *  Dependencies: edu.princeton.cs.algs4.WeightedQuickUnionUF
- *                java.lang.IllegalArgumentException
+ *  Dependencies: java.lang.IllegalArgumentException
  *
  *  A data type with n-by-n grid of sites simulating the percolation process
  *
@@ -10,32 +9,48 @@
  *  Date: 2018-07-13 23:33:54
  ******************************************************************************/
 
-import edu.princeton.cs.algs4.WeightedQuickUnionUF;
-
 public class Percolation {
+
+    // state bits of a site
+    private static final byte OPEN = 1;
+    private static final byte TOP = 2;
+    private static final byte BOTTOM = 4;
+    private static final byte SPANNING = TOP | BOTTOM;
+
     // number of sites
     private final int gridCount;
     private final int n;
 
-    // WeightedUnionUF Object grids
-    private WeightedQuickUnionUF grids;
-
-    /* If only one (WeightedQuickUnionUF) "grids" is used,
-    * isFull() will return a wrong value when the lattice percolates.
-    * At that time all sites which connected to the bottom virtual site
-    * will also connect to the top virtual site,
-    * since the top and bottom virtual sites are connected.
-    * Therefore, a "supervisor grids" without bottom virtual site is used
-     * to check if the current site is full. (connected to the top virtual site)
+    /* Union-find of the sites on a single int array.
+    * parent[i] is the parent of site i, or the negative size of the component
+    * if site i is a root. Components are linked by size and paths are halved
+    * on every find.
+    */
+    private final int[] parent;
+
+    /* Open state of the sites.
+    * Instead of a top and a bottom virtual site, the root of each component
+    * also records whether the component touches the top or the bottom row.
+    * Since no virtual sites are connected, isFull() does not suffer from
+    * backwash, and a single union-find is enough for both isFull() and
+    * percolates().
     */
-    private WeightedQuickUnionUF supervisorGrids;
+    private final byte[] state;
 
-    // Open or close state of the sites
-    private boolean[] state;
+    /* Number of open sites when some component first touched both the top
+    * and the bottom row, -1 before that. It is recorded by union() at the
+    * moment the spanning component is formed, so percolation never has to
+    * be polled with a find.
+    */
+    private int criticalIndex = -1;
 
     // Record the number of opened sites
     private int numOpenSites = 0;
 
+    // number of components of open sites, and size of the largest one
+    private int numClusters = 0;
+    private int largestCluster = 0;
+
     /**
      * Create n-by-n grid, with all sites blocked
      * @param n size of grids
@@ -47,16 +62,9 @@ public class Percolation {
 
         gridCount = n * n;
 
-        grids = new WeightedQuickUnionUF(gridCount + 2);
-        supervisorGrids = new WeightedQuickUnionUF(gridCount + 1);
-
-        state = new boolean[gridCount + 2];
-        state[0] = true;
-        state[gridCount + 1] = true;
-
-        for (int i = 1; i <= gridCount; i++) {
-            state[i] = false;
-        }
+        // parent links are only read after a site is opened, which resets them
+        parent = new int[gridCount];
+        state = new byte[gridCount];
     }
 
     /**
@@ -72,7 +80,7 @@ public class Percolation {
         if (col <= 0 || col > n)
             throw new IllegalArgumentException("Col is out of boundary!");
 
-        return (row - 1) * n + col;
+        return (row - 1) * n + (col - 1);
     }
 
     /**
@@ -81,45 +89,167 @@ public class Percolation {
      * @param col column of site
      */
     public void open(int row, int col) {
+        openIndex(rcToIndex(row, col));
+    }
 
-        if (!isOpen(row, col)) {
+    /**
+     * Open a site by its linear index if it is not open already,
+     * the site (row, col) has the linear index (row - 1) * n + (col - 1)
+     * @param site linear index of site, from 0 to n * n - 1
+     */
+    public void open(int site) {
+        if (site < 0 || site >= gridCount)
+            throw new IllegalArgumentException("Site is out of boundary!");
 
-            int index = rcToIndex(row, col);
+        openIndex(site);
+    }
 
-            if (row > 1 && isOpen(row - 1, col)) {
-                grids.union(rcToIndex(row - 1, col), index);
-                supervisorGrids.union(rcToIndex(row - 1, col), index);
-            }
+    /**
+     * Open the sites by their linear indices in one pass
+     * @param sites linear indices of sites
+     * @return position in sites of the site that made the system percolate,
+     *         -1 if it does not start to percolate during this call
+     */
+    public int openAll(int[] sites) {
+        if (sites == null)
+            throw new IllegalArgumentException("Sites is null!");
 
-            if (row < n && isOpen(row + 1, col)) {
-                grids.union(rcToIndex(row + 1, col), index);
-                supervisorGrids.union(rcToIndex(row + 1, col), index);
-            }
+        return openAll(sites, 0, sites.length);
+    }
+
+    /**
+     * Open the sites sites[from] to sites[to - 1] by their linear indices.
+     * All indices are validated before any site is opened, so a bad index
+     * leaves the grid unchanged, and the opening loop does no bounds checks.
+     * @param sites linear indices of sites
+     * @param from first position in sites, inclusive
+     * @param to last position in sites, exclusive
+     * @return position in sites of the site that made the system percolate,
+     *         -1 if it does not start to percolate during this call
+     */
+    public int openAll(int[] sites, int from, int to) {
+        if (sites == null)
+            throw new IllegalArgumentException("Sites is null!");
 
+        if (from < 0 || to > sites.length || from > to)
+            throw new IllegalArgumentException("Range is out of boundary!");
 
-            if (col > 1 && isOpen(row, col - 1)) {
-                grids.union(rcToIndex(row, col - 1), index);
-                supervisorGrids.union(rcToIndex(row, col - 1), index);
-            }
+        for (int i = from; i < to; i++) {
+            if (sites[i] < 0 || sites[i] >= gridCount)
+                throw new IllegalArgumentException("Site is out of boundary!");
+        }
 
+        int first = -1;
+        boolean wasPercolated = percolates();
 
-            if (col < n && isOpen(row, col + 1)) {
-                grids.union(rcToIndex(row, col + 1), index);
-                supervisorGrids.union(rcToIndex(row, col + 1), index);
-            }
+        for (int i = from; i < to; i++) {
+            openIndex(sites[i]);
 
+            if (first < 0 && !wasPercolated && criticalIndex >= 0)
+                first = i;
+        }
+
+        return first;
+    }
+
+    /**
+     * Helper method, open the site at a validated index in grids,
+     * the neighbors are found arithmetically without rcToIndex
+     * @param index index in grids
+     */
+    private void openIndex(int index) {
+
+        if (state[index] != 0) {
+            if (PercolationMetrics.ENABLED) PercolationMetrics.duplicateOpen();
+            return;
+        }
 
-            if (row == 1) {
-                grids.union(0, index);
-                supervisorGrids.union(0, index);
+        byte flags = OPEN;
+        if (index < n)              flags |= TOP;
+        if (index >= gridCount - n) flags |= BOTTOM;
+
+        parent[index] = -1;
+        state[index] = flags;
+        ++numOpenSites;
+        ++numClusters;
+        if (largestCluster == 0) largestCluster = 1;
+
+        // a single site spans the grid when n is 1
+        if ((flags & SPANNING) == SPANNING && criticalIndex < 0)
+            criticalIndex = numOpenSites;
+
+        // zero based column of the site
+        int col = index % n;
+
+        if (index >= n && state[index - n] != 0)
+            union(index - n, index);
+
+        if (index < gridCount - n && state[index + n] != 0)
+            union(index + n, index);
+
+        if (col > 0 && state[index - 1] != 0)
+            union(index - 1, index);
+
+        if (col < n - 1 && state[index + 1] != 0)
+            union(index + 1, index);
+    }
+
+    /**
+     * Find the root of a site, halving the path on the way
+     * @param p index in grids
+     * @return root of the component
+     */
+    private int find(int p) {
+        int q;
+        // parent links followed, dead code unless metrics are enabled
+        int path = 0;
+        while ((q = parent[p]) >= 0) {
+            int g = parent[q];
+            if (g < 0) {
+                p = q;
+                ++path;
+                break;
             }
+            parent[p] = g;
+            p = g;
+            path += 2;
+        }
 
-            if (row == n)
-                grids.union(gridCount + 1, index);
+        if (PercolationMetrics.ENABLED) PercolationMetrics.find(path);
+        return p;
+    }
 
-            state[index] = true;
-            ++numOpenSites;
+    /**
+     * Link the smaller component under the larger one,
+     * and merge the top and bottom flags into the new root
+     * @param p index in grids
+     * @param q index in grids
+     */
+    private void union(int p, int q) {
+        int i = find(p);
+        int j = find(q);
+        if (i == j) return;
+
+        // sizes are negative, so the smaller value is the larger component
+        if (parent[i] > parent[j]) {
+            int swap = i;
+            i = j;
+            j = swap;
         }
+
+        parent[i] += parent[j];
+        parent[j] = i;
+
+        if (PercolationMetrics.ENABLED) PercolationMetrics.union();
+
+        --numClusters;
+        if (-parent[i] > largestCluster) largestCluster = -parent[i];
+
+        byte flags = (byte) (state[i] | state[j]);
+        state[i] = flags;
+
+        if ((flags & SPANNING) == SPANNING && criticalIndex < 0)
+            criticalIndex = numOpenSites;
     }
 
     /**
@@ -128,7 +258,7 @@ public class Percolation {
      * @return Whether site (row, col) is open
      */
     public boolean isOpen(int row, int col) {
-        return state[rcToIndex(row, col)];
+        return state[rcToIndex(row, col)] != 0;
     }
 
     /**
@@ -137,7 +267,8 @@ public class Percolation {
      * @return Whether site (row, col) is full
      */
     public boolean isFull(int row, int col) {
-        return supervisorGrids.connected(0, rcToIndex(row, col));
+        int index = rcToIndex(row, col);
+        return state[index] != 0 && (state[find(index)] & TOP) != 0;
     }
 
     /**
@@ -147,10 +278,34 @@ public class Percolation {
         return numOpenSites;
     }
 
+    /**
+     * @return number of clusters of open sites
+     */
+    public int numberOfClusters() {
+        return numClusters;
+    }
+
+    /**
+     * @return number of sites in the largest cluster of open sites
+     */
+    public int largestCluster() {
+        return largestCluster;
+    }
+
     /**
      * @return Whether the system is percolated
      */
     public boolean percolates() {
-        return grids.connected(0, gridCount + 1);
+        return criticalIndex >= 0;
+    }
+
+    /**
+     * The critical index is exact even if sites are opened in bulk,
+     * since it is recorded when the spanning component is formed.
+     * @return number of open sites when the system started to percolate,
+     *         -1 if it does not percolate
+     */
+    public int criticalIndex() {
+        return criticalIndex;
     }
 }
@@ -0,0 +1,227 @@
+/******************************************************************************
+ *  Compilation:  javac PercolationBenchmark.java
+ *  Execution:    java PercolationBenchmark [maxN]
+ *                java PercolationBenchmark -n n
+ *  Dependencies: Percolation.java
+ *                PercolationStats.java
+ *                java.lang.management.ManagementFactory
+ *                com.sun.management.ThreadMXBean
+ *
+ *  Micro benchmarks of the percolation hot path for n = 64, 128, ..., maxN
+ *  (4096 by default): Percolation.open, isFull, percolates and whole
+ *  PercolationStats runs.
+ *
+ *  The benchmarks of record are the JMH ones in percolation/jmh, this
+ *  harness is a quick check which needs nothing but javac. Every
+ *  benchmark is run for a fixed time to warm up before it is measured
+ *  for a fixed time, and reports the time and the bytes allocated by the
+ *  benchmark thread per operation, like JMH with -prof gc.
+ *
+ *  Like a JMH fork, each grid size runs in a fresh JVM ("-n n"), started
+ *  with the flags of this one, so the code compiled for one size does not
+ *  bias the next. The result of every isFull and percolates call goes to
+ *  consume(), which the forks are told never to inline, so the JIT can
+ *  neither drop the call nor hoist it out of the loop; the times include
+ *  the cost of that call, about a nanosecond.
+ *
+ *  Author: AlvinZSJ
+ ******************************************************************************/
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class PercolationBenchmark {
+
+    // time to warm up and to measure each benchmark
+    private static final long WARMUP_NANOS = 2_000_000_000L;
+    private static final long MEASURE_NANOS = 3_000_000_000L;
+
+    // keeps consume() a real call, so its argument is computed every time
+    private static final String DONT_INLINE =
+        "-XX:CompileCommand=dontinline,PercolationBenchmark::consume";
+
+    // sites per PercolationStats run, trials are scaled down for large n
+    private static final long SITES_PER_RUN = 1L << 24;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // results are folded into the sink so the JIT cannot drop the work
+    private static volatile long sink;
+
+    // results of single calls, counted by consume()
+    private static long consumed;
+
+    /**
+     * An operation to benchmark
+     */
+    private interface Body {
+        /**
+         * @return number of operations done by the call
+         */
+        long run();
+    }
+
+    /**
+     * Take the result of one call, never inlined in the forks
+     * @param result result of the call
+     */
+    private static void consume(boolean result) {
+        if (result) consumed++;
+    }
+
+    /**
+     * Warm up and measure a benchmark, then print the time and
+     * allocation per operation
+     * @param name name of benchmark
+     * @param n size of grids
+     * @param body operation to benchmark
+     */
+    private static void measure(String name, int n, Body body) {
+
+        long warmupStart = System.nanoTime();
+        do {
+            body.run();
+        } while (System.nanoTime() - warmupStart < WARMUP_NANOS);
+
+        long threadId = Thread.currentThread().getId();
+        long ops = 0;
+        long bytes = THREADS.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long elapsed;
+
+        do {
+            ops += body.run();
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MEASURE_NANOS);
+
+        bytes = THREADS.getThreadAllocatedBytes(threadId) - bytes;
+
+        System.out.printf("%-20s %6d %14.2f ns/op %14.2f B/op\n",
+                          name, n, (double) elapsed / ops, (double) bytes / ops);
+    }
+
+    /**
+     * @param count number of sites
+     * @param random random stream
+     * @return random permutation of the linear site indices
+     */
+    private static int[] permutation(int count, SplittableRandom random) {
+        int[] sites = new int[count];
+        for (int i = 0; i < count; i++) {
+            int r = random.nextInt(i + 1);
+            sites[i] = sites[r];
+            sites[r] = i;
+        }
+        return sites;
+    }
+
+    /**
+     * Run all benchmarks for one grid size
+     * @param n size of grids
+     */
+    private static void benchmark(int n) {
+
+        int gridCount = n * n;
+        SplittableRandom random = new SplittableRandom(n);
+        int[] order = permutation(gridCount, random);
+
+        // open every site of a new grid, one operation per site
+        measure("open", n, () -> {
+            Percolation grid = new Percolation(n);
+            for (int site : order) {
+                grid.open(site);
+            }
+            sink += grid.numberOfOpenSites();
+            return gridCount;
+        });
+
+        // a grid opened up to its percolation threshold
+        Percolation grid = new Percolation(n);
+        for (int i = 0; i < gridCount && !grid.percolates(); i++) {
+            grid.open(order[i]);
+        }
+
+        int[] rows = new int[gridCount];
+        int[] cols = new int[gridCount];
+        for (int i = 0; i < gridCount; i++) {
+            rows[i] = random.nextInt(1, n + 1);
+            cols[i] = random.nextInt(1, n + 1);
+        }
+
+        measure("isFull", n, () -> {
+            for (int i = 0; i < gridCount; i++) {
+                consume(grid.isFull(rows[i], cols[i]));
+            }
+            sink += consumed;
+            return gridCount;
+        });
+
+        // percolates() only reads a field, consume() keeps it in the loop
+        measure("percolates", n, () -> {
+            for (int i = 0; i < gridCount; i++) {
+                consume(grid.percolates());
+            }
+            sink += consumed;
+            return gridCount;
+        });
+
+        // one operation per trial
+        int trials = (int) Math.max(1, SITES_PER_RUN / gridCount);
+        measure("PercolationStats", n, () -> {
+            PercolationStats stats = new PercolationStats(n, trials);
+            sink += Double.doubleToRawLongBits(stats.mean());
+            return trials;
+        });
+    }
+
+    /**
+     * Run the benchmarks of one grid size in a new JVM with the flags
+     * of this one
+     * @param n size of grids
+     * @throws IOException if the JVM cannot be started
+     * @throws InterruptedException if interrupted while waiting for it
+     */
+    private static void fork(int n) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-XX:CompileCommand=quiet");
+        command.add(DONT_INLINE);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("PercolationBenchmark");
+        command.add("-n");
+        command.add(Integer.toString(n));
+
+        int exit = new ProcessBuilder(command).inheritIO().start().waitFor();
+        if (exit != 0)
+            throw new IllegalStateException("Benchmark of n = " + n + " failed!");
+    }
+
+    /**
+     * Benchmark client
+     * @param args largest grid size, 4096 by default,
+     *             or "-n n" to run one size in this JVM
+     * @throws IOException if a fork cannot be started
+     * @throws InterruptedException if interrupted while waiting for a fork
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        if (args.length >= 2 && args[0].equals("-n")) {
+            benchmark(Integer.parseInt(args[1]));
+            return;
+        }
+
+        int maxN = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+
+        System.out.printf("%-20s %6s %20s %17s\n", "benchmark", "n", "time", "alloc");
+        for (int n = 64; n <= maxN; n *= 2) {
+            fork(n);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/******************************************************************************
+ *  Compilation:  javac PercolationMetrics.java
+ *  Execution:    java -Dpercolation.metrics=true PercolationStats n trials
+ *  Dependencies: java.util.concurrent.atomic.LongAdder
+ *                java.util.concurrent.atomic.AtomicLongArray
+ *
+ *  Opt-in counters of the percolation hot path: unions, finds and their
+ *  path lengths, opens of sites which were open already, and per trial
+ *  the wall time and the fraction of opened sites.
+ *
+ *  The counters are enabled with -Dpercolation.metrics=true. ENABLED is a
+ *  static final constant, so when it is off the JIT folds every
+ *  "if (PercolationMetrics.ENABLED)" block away and Percolation runs
+ *  exactly as without instrumentation.
+ *
+ *  Author: AlvinZSJ
+ ******************************************************************************/
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class PercolationMetrics {
+
+    // whether the counters are collected, read once when the class is loaded
+    static final boolean ENABLED = Boolean.getBoolean("percolation.metrics");
+
+    // buckets of the opened sites histogram, one per percent of the grid
+    private static final int BUCKETS = 101;
+
+    private static final LongAdder UNIONS = new LongAdder();
+    private static final LongAdder FINDS = new LongAdder();
+    private static final LongAdder FIND_PATH = new LongAdder();
+    private static final LongAdder DUPLICATE_OPENS = new LongAdder();
+    private static final LongAdder TRIALS = new LongAdder();
+    private static final LongAdder TRIAL_NANOS = new LongAdder();
+    private static final AtomicLongArray OPENED = new AtomicLongArray(BUCKETS);
+
+    private PercolationMetrics() { }
+
+    /**
+     * Count a union which linked two components
+     */
+    static void union() {
+        UNIONS.increment();
+    }
+
+    /**
+     * Count a find
+     * @param pathLength number of parent links followed
+     */
+    static void find(int pathLength) {
+        FINDS.increment();
+        FIND_PATH.add(pathLength);
+    }
+
+    /**
+     * Count an open of a site which was open already
+     */
+    static void duplicateOpen() {
+        DUPLICATE_OPENS.increment();
+    }
+
+    /**
+     * Count a finished trial
+     * @param nanos wall time of the trial
+     * @param opened number of opened sites
+     * @param gridCount number of sites
+     */
+    static void trial(long nanos, int opened, int gridCount) {
+        TRIALS.increment();
+        TRIAL_NANOS.add(nanos);
+        OPENED.incrementAndGet((int) (100L * opened / gridCount));
+    }
+
+    /**
+     * @return current values of all counters
+     */
+    public static Snapshot snapshot() {
+        long[] opened = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            opened[i] = OPENED.get(i);
+        }
+
+        return new Snapshot(UNIONS.sum(), FINDS.sum(), FIND_PATH.sum(),
+                            DUPLICATE_OPENS.sum(), TRIALS.sum(), TRIAL_NANOS.sum(),
+                            opened);
+    }
+
+    /**
+     * Set all counters back to zero
+     */
+    public static void reset() {
+        UNIONS.reset();
+        FINDS.reset();
+        FIND_PATH.reset();
+        DUPLICATE_OPENS.reset();
+        TRIALS.reset();
+        TRIAL_NANOS.reset();
+        for (int i = 0; i < BUCKETS; i++) {
+            OPENED.set(i, 0);
+        }
+    }
+
+    /**
+     * Immutable values of the counters at one moment
+     */
+    public static final class Snapshot {
+
+        private final long unions;
+        private final long finds;
+        private final long findPath;
+        private final long duplicateOpens;
+        private final long trials;
+        private final long trialNanos;
+        private final long[] opened;
+
+        private Snapshot(long unions, long finds, long findPath, long duplicateOpens,
+                         long trials, long trialNanos, long[] opened) {
+            this.unions = unions;
+            this.finds = finds;
+            this.findPath = findPath;
+            this.duplicateOpens = duplicateOpens;
+            this.trials = trials;
+            this.trialNanos = trialNanos;
+            this.opened = opened;
+        }
+
+        /**
+         * @return number of unions which linked two components
+         */
+        public long unions() {
+            return unions;
+        }
+
+        /**
+         * @return number of finds
+         */
+        public long finds() {
+            return finds;
+        }
+
+        /**
+         * @return mean number of parent links followed by a find
+         */
+        public double meanFindPathLength() {
+            return finds == 0 ? 0.0 : (double) findPath / finds;
+        }
+
+        /**
+         * @return number of opens of sites which were open already
+         */
+        public long duplicateOpens() {
+            return duplicateOpens;
+        }
+
+        /**
+         * @return number of finished trials
+         */
+        public long trials() {
+            return trials;
+        }
+
+        /**
+         * @return mean wall time of a trial in nanoseconds
+         */
+        public double meanTrialNanos() {
+            return trials == 0 ? 0.0 : (double) trialNanos / trials;
+        }
+
+        /**
+         * @param percent percent of opened sites, from 0 to 100
+         * @return number of trials which ended with that percent of sites open
+         */
+        public long openedHistogram(int percent) {
+            if (percent < 0 || percent >= BUCKETS)
+                throw new IllegalArgumentException("Percent is out of boundary!");
+            return opened[percent];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder s = new StringBuilder();
+            s.append(String.format("unions:          %d\n", unions));
+            s.append(String.format("finds:           %d\n", finds));
+            s.append(String.format("find path:       %.3f\n", meanFindPathLength()));
+            s.append(String.format("duplicate opens: %d\n", duplicateOpens));
+            s.append(String.format("trials:          %d\n", trials));
+            s.append(String.format("trial time:      %.0f ns\n", meanTrialNanos()));
+            s.append("opened sites:\n");
+            for (int i = 0; i < BUCKETS; i++) {
+                if (opened[i] != 0)
+                    s.append(String.format("  %3d%%  %d\n", i, opened[i]));
+            }
+            return s.toString();
+        }
+    }
+}
@@ -1,14 +1,25 @@
 /******************************************************************************
  *  Compilation:  javac PercolationStats.java
- *  Execution:    java PercolationStats n trials
+ *  Execution:    java PercolationStats n trials [seed parallelism [checkpoint]]
+ *                java PercolationStats -p n precision seed maxTrials
  *  Dependencies: Percolation.java
  *                edu.princeton.cs.algs4.StdRandom
  *                edu.princeton.cs.algs4.StdStats
  *                java.lang.IllegalArgumentException
+ *                java.util.SplittableRandom
+ *                java.util.concurrent.ForkJoinPool
+ *                java.nio.channels.FileChannel
  *
  *  This program try T times to estimate the percolation probability
  *  of a n-by-n lattice. The input parameters are "n" and "trials",
- *  which set the size of lattice and the number of tests
+ *  which set the size of lattice and the number of tests.
+ *  With the optional "seed" and "parallelism", the trials are spread
+ *  over a fork-join pool and the result only depends on the seed.
+ *  The finished trials of a seeded run can be checkpointed to a file,
+ *  and a run started with the same file resumes from there.
+ *  A third mode, untilPrecision() or "-p" on the command line, keeps
+ *  running statistics and stops as soon as the confidence interval is
+ *  narrow enough.
  *
  *  Author: AlvinZSJ
  *  Date: 2018-07-13 23:33:54
@@ -17,13 +28,30 @@
 
 import edu.princeton.cs.algs4.StdRandom;
 import edu.princeton.cs.algs4.StdStats;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 public class PercolationStats {
 
     private static final double CONFIDENCE_95 = 1.96;
 
-    // array of threshold for each test
-    private final double[] threshold;
+    // trials run before the confidence interval is trusted for early stopping
+    private static final int MIN_TRIALS = 30;
+
+    // checkpoint file: magic, n and seed, followed by one double per trial
+    private static final int CHECKPOINT_MAGIC = 0x50435354;
+    private static final int CHECKPOINT_HEADER = 16;
+
+    // trials between two checkpoints
+    private static final int CHECKPOINT_BLOCK = 256;
 
     // T times test
     private final int t;
@@ -49,36 +77,386 @@ public class PercolationStats {
         else
             this.t = trials;
         
-        threshold = new double[t];
-        int openCount = 0;
+        double[] threshold = new double[t];
+        int gridCount = n * n;
+        int[] sites = identity(gridCount);
 
         // Take T times trials to find p
         for (int i = 0; i < t; i++) {
-            
+
             // Percolation Object used for percolation test
+            long start = PercolationMetrics.ENABLED ? System.nanoTime() : 0;
             Percolation grid = new Percolation(n);
+            int openCount = 0;
 
-            // Randomly open sites until the lattice is percolated
+            // Open sites in random order until the lattice is percolated,
+            // one step of Fisher-Yates shuffle picks the next closed site
             while (!grid.percolates()) {
 
-                int randomRow = StdRandom.uniform(1, n + 1);
-                int randomCol = StdRandom.uniform(1, n + 1);
-
-                if (!grid.isOpen(randomRow, randomCol)) {
-                    grid.open(randomRow, randomCol);
-                    openCount += 1;
-                }
+                int r = StdRandom.uniform(openCount, gridCount);
+                int site = sites[r];
+                sites[r] = sites[openCount];
+                sites[openCount] = site;
 
+                grid.open(site);
+                openCount += 1;
             }
 
-            threshold[i] = (double) openCount / (n * n);
-            openCount = 0;
+            threshold[i] = (double) openCount / gridCount;
+
+            if (PercolationMetrics.ENABLED)
+                PercolationMetrics.trial(System.nanoTime() - start, openCount, gridCount);
         }
 
         stddevThreshold = StdStats.stddev(threshold);
         meanThreshold = StdStats.mean(threshold);
     }
 
+    /**
+     * Perform trials independent experiments on an n-by-n grid in parallel.
+     *
+     * Every trial owns its Percolation object and a random stream split
+     * from the seed in trial order, and the thresholds are reduced in
+     * trial order as well, so the statistics for a given seed are the same
+     * whatever the number of threads is.
+     *
+     * @param n size of grids
+     * @param trials times of trials
+     * @param seed seed of the random streams
+     * @param parallelism number of worker threads
+     */
+    public PercolationStats(int n, int trials, long seed, int parallelism) {
+        this(n, trials, seed, parallelism, null);
+    }
+
+    /**
+     * Perform trials independent experiments on an n-by-n grid in parallel,
+     * checkpointing the finished trials to a file.
+     *
+     * The trials run in blocks, and the thresholds of every block are
+     * appended to the checkpoint when it finishes. If the file already
+     * holds trials of a run with the same n and seed, those are read back
+     * and the run resumes after them. Trial i always uses the i-th stream
+     * split from the seed, so a resumed run gives the same statistics as
+     * one which was never stopped.
+     *
+     * @param n size of grids
+     * @param trials times of trials
+     * @param seed seed of the random streams
+     * @param parallelism number of worker threads
+     * @param checkpoint checkpoint file, null for no checkpoints
+     */
+    public PercolationStats(int n, int trials, long seed, int parallelism, Path checkpoint) {
+
+        if (n <= 0)
+            throw new IllegalArgumentException("n is out of boundary!");
+
+        if (trials <= 0)
+            throw new IllegalArgumentException("number of trails is out of boundary!");
+
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("parallelism is out of boundary!");
+
+        this.t = trials;
+        double[] threshold = new double[t];
+
+        // split one stream per trial up front, the order of splits fixes the result
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[t];
+        for (int i = 0; i < t; i++) {
+            streams[i] = root.split();
+        }
+
+        // each worker reuses its own site array instead of allocating one per trial
+        ThreadLocal<int[]> sites = ThreadLocal.withInitial(() -> new int[n * n]);
+
+        // without a checkpoint all trials run as a single block
+        int block = checkpoint == null ? t : CHECKPOINT_BLOCK;
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try (FileChannel channel = checkpoint == null ? null : openCheckpoint(checkpoint, n, seed)) {
+
+            int done = channel == null ? 0 : readCheckpoint(channel, threshold);
+
+            for (int from = done; from < t; from += block) {
+                int lo = from;
+                int hi = Math.min(from + block, t);
+
+                pool.submit(() -> IntStream.range(lo, hi).parallel()
+                        .forEach(i -> threshold[i] = trial(n, sites.get(), streams[i])))
+                    .get();
+
+                if (channel != null)
+                    appendCheckpoint(channel, threshold, lo, hi);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Trials are interrupted!", e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Trial failed!", e.getCause());
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        stddevThreshold = StdStats.stddev(threshold);
+        meanThreshold = StdStats.mean(threshold);
+    }
+
+    /**
+     * Open a checkpoint file, writing the header if it is new
+     * @param checkpoint checkpoint file
+     * @param n size of grids
+     * @param seed seed of the random streams
+     * @return open channel of the checkpoint
+     * @throws IOException if the file cannot be read or written
+     */
+    private static FileChannel openCheckpoint(Path checkpoint, int n, long seed) throws IOException {
+
+        FileChannel channel = FileChannel.open(checkpoint,
+                                               StandardOpenOption.CREATE,
+                                               StandardOpenOption.READ,
+                                               StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(CHECKPOINT_HEADER);
+
+            if (channel.size() < CHECKPOINT_HEADER) {
+                header.putInt(CHECKPOINT_MAGIC).putInt(n).putLong(seed).flip();
+                channel.truncate(0);
+                writeFully(channel, header, 0);
+                return channel;
+            }
+
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) break;
+            }
+            header.flip();
+
+            if (header.getInt() != CHECKPOINT_MAGIC || header.getInt() != n || header.getLong() != seed)
+                throw new IllegalArgumentException("Checkpoint belongs to another run!");
+
+            return channel;
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Read the thresholds of the finished trials back from a checkpoint,
+     * and drop a trial which was only partly written
+     * @param channel checkpoint file
+     * @param threshold array of threshold for each test
+     * @return number of finished trials read
+     * @throws IOException if the file cannot be read
+     */
+    private static int readCheckpoint(FileChannel channel, double[] threshold) throws IOException {
+
+        long records = (channel.size() - CHECKPOINT_HEADER) / Double.BYTES;
+        channel.truncate(CHECKPOINT_HEADER + records * Double.BYTES);
+
+        int done = (int) Math.min(records, threshold.length);
+        ByteBuffer buffer = ByteBuffer.allocate(done * Double.BYTES);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, CHECKPOINT_HEADER + buffer.position()) < 0)
+                throw new IOException("Checkpoint is truncated!");
+        }
+        buffer.flip();
+
+        for (int i = 0; i < done; i++) {
+            threshold[i] = buffer.getDouble();
+        }
+        return done;
+    }
+
+    /**
+     * Append the thresholds of trials from to to - 1 to a checkpoint
+     * @param channel checkpoint file
+     * @param threshold array of threshold for each test
+     * @param from first trial, inclusive
+     * @param to last trial, exclusive
+     * @throws IOException if the file cannot be written
+     */
+    private static void appendCheckpoint(FileChannel channel, double[] threshold,
+                                         int from, int to) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate((to - from) * Double.BYTES);
+        for (int i = from; i < to; i++) {
+            buffer.putDouble(threshold[i]);
+        }
+        buffer.flip();
+
+        writeFully(channel, buffer, CHECKPOINT_HEADER + (long) from * Double.BYTES);
+    }
+
+    /**
+     * @param channel file to write
+     * @param buffer bytes to write
+     * @param position position in the file
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Statistics of trials which are already done
+     * @param trials times of trials
+     * @param mean sample mean of percolation threshold
+     * @param stddev sample standard deviation of percolation threshold
+     */
+    private PercolationStats(int trials, double mean, double stddev) {
+        this.t = trials;
+        meanThreshold = mean;
+        stddevThreshold = stddev;
+    }
+
+    /**
+     * Perform experiments on an n-by-n grid until the half-width of the 95%
+     * confidence interval falls below the requested precision.
+     *
+     * Mean and variance are updated per trial with Welford's method, so
+     * the memory does not grow with the number of trials. The random
+     * streams are split from the seed like in the parallel mode, so the
+     * first trials of both modes see the same opening orders.
+     *
+     * @param n size of grids
+     * @param precision requested half-width of the 95% confidence interval
+     * @param seed seed of the random streams
+     * @param maxTrials upper bound of the number of trials
+     * @return statistics of the trials performed
+     */
+    public static PercolationStats untilPrecision(int n, double precision, long seed, int maxTrials) {
+
+        if (n <= 0)
+            throw new IllegalArgumentException("n is out of boundary!");
+
+        if (!(precision > 0))
+            throw new IllegalArgumentException("precision is out of boundary!");
+
+        if (maxTrials <= 0)
+            throw new IllegalArgumentException("number of trails is out of boundary!");
+
+        SplittableRandom root = new SplittableRandom(seed);
+        int[] sites = new int[n * n];
+
+        // running count, mean and sum of squared deviations
+        int count = 0;
+        double mean = 0.0;
+        double m2 = 0.0;
+
+        while (count < maxTrials) {
+
+            double x = trial(n, sites, root.split());
+
+            ++count;
+            double delta = x - mean;
+            mean += delta / count;
+            m2 += delta * (x - mean);
+
+            if (count >= MIN_TRIALS
+                && CONFIDENCE_95 * Math.sqrt(m2 / (count - 1) / count) < precision)
+                break;
+        }
+
+        return new PercolationStats(count, mean,
+                                    count > 1 ? Math.sqrt(m2 / (count - 1)) : Double.NaN);
+    }
+
+    /**
+     * Open sites of a new n-by-n grid in random order until it percolates.
+     *
+     * The sites array is refilled with the linear indices and shuffled in
+     * place one step per opened site, so the outcome only depends on the
+     * random stream and not on which trial used the array before.
+     *
+     * @param n size of grids
+     * @param sites array of n * n linear site indices
+     * @param random random stream owned by this trial
+     * @return fraction of opened sites
+     */
+    private static double trial(int n, int[] sites, SplittableRandom random) {
+
+        long start = PercolationMetrics.ENABLED ? System.nanoTime() : 0;
+        Percolation grid = new Percolation(n);
+        int gridCount = n * n;
+        int openCount = 0;
+
+        for (int i = 0; i < gridCount; i++) {
+            sites[i] = i;
+        }
+
+        while (!grid.percolates()) {
+
+            int r = random.nextInt(openCount, gridCount);
+            int site = sites[r];
+            sites[r] = sites[openCount];
+            sites[openCount] = site;
+
+            grid.open(site);
+            openCount += 1;
+        }
+
+        if (PercolationMetrics.ENABLED)
+            PercolationMetrics.trial(System.nanoTime() - start, openCount, gridCount);
+
+        return (double) openCount / gridCount;
+    }
+
+    /**
+     * Find the critical index of an opening order, the number of sites
+     * opened when the n-by-n grid starts to percolate.
+     *
+     * The sites are opened in blocks of n with Percolation.openAll and
+     * percolation is only checked between blocks, the exact step is
+     * recorded by the union that joins the top and the bottom rows.
+     *
+     * @param n size of grids
+     * @param permutation linear site indices in opening order
+     * @return critical index, -1 if the grid does not percolate
+     */
+    public static int criticalIndex(int n, int[] permutation) {
+
+        if (permutation == null)
+            throw new IllegalArgumentException("Permutation is null!");
+
+        Percolation grid = new Percolation(n);
+
+        for (int from = 0; from < permutation.length && !grid.percolates(); from += n) {
+            grid.openAll(permutation, from, Math.min(from + n, permutation.length));
+        }
+
+        return grid.criticalIndex();
+    }
+
+    /**
+     * @param count number of sites
+     * @return array of the linear site indices 0 to count - 1
+     */
+    private static int[] identity(int count) {
+        int[] sites = new int[count];
+        for (int i = 0; i < count; i++) {
+            sites[i] = i;
+        }
+        return sites;
+    }
+
+    /**
+     * @return number of trials performed
+     */
+    public int trials() {
+        return t;
+    }
+
     /**
      * @return sample mean of percolation threshold
      */
@@ -119,13 +497,31 @@ public class PercolationStats {
      * @param args times of trials and grids to open
      */
     public static void main(String[] args) {
-        PercolationStats lattice = new PercolationStats(Integer.parseInt(args[0]),
-                                                        Integer.parseInt(args[1]));
+        PercolationStats lattice;
+
+        if (args.length >= 5 && args[0].equals("-p"))
+            lattice = untilPrecision(Integer.parseInt(args[1]),
+                                     Double.parseDouble(args[2]),
+                                     Long.parseLong(args[3]),
+                                     Integer.parseInt(args[4]));
+        else if (args.length >= 4)
+            lattice = new PercolationStats(Integer.parseInt(args[0]),
+                                           Integer.parseInt(args[1]),
+                                           Long.parseLong(args[2]),
+                                           Integer.parseInt(args[3]),
+                                           args.length >= 5 ? Path.of(args[4]) : null);
+        else
+            lattice = new PercolationStats(Integer.parseInt(args[0]),
+                                           Integer.parseInt(args[1]));
 
+        System.out.printf("trials:      %d\n", lattice.t);
         System.out.printf("mean:        %f\n", lattice.meanThreshold);
         System.out.printf("stddev:      %f\n", lattice.stddevThreshold);
         System.out.printf("95%% confidence interval: [%f,%f]\n",
                           lattice.confidenceLo(),
                           lattice.confidenceHi());
+
+        if (PercolationMetrics.ENABLED)
+            System.out.print(PercolationMetrics.snapshot());
     }
 }
\ No newline at end of file
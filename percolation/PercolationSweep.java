@@ -0,0 +1,216 @@
+/******************************************************************************
+ *  Compilation:  javac PercolationSweep.java
+ *  Execution:    java PercolationSweep n sweeps seed
+ *  Dependencies: Percolation.java
+ *                java.lang.IllegalArgumentException
+ *                java.util.SplittableRandom
+ *
+ *  Newman-Ziff sweeps of an n-by-n lattice.
+ *
+ *  Each sweep opens all n * n sites in one random order and records, for
+ *  every number of open sites, the size of the largest cluster, the number
+ *  of clusters and whether the lattice spans. The averages over the sweeps
+ *  are convolved with the binomial distribution to give the curves at any
+ *  occupation probability p, so one sweep replaces separate runs per p.
+ *
+ *  Author: AlvinZSJ
+ ******************************************************************************/
+
+import java.util.SplittableRandom;
+
+public class PercolationSweep {
+
+    // terms of the binomial distribution below this are dropped
+    private static final double EPSILON = 1e-15;
+
+    // number of sites
+    private final int gridCount;
+
+    // number of sweeps
+    private final int sweeps;
+
+    /* Sums over the sweeps, indexed by the number of open sites,
+    *  from 0 to gridCount.
+    */
+    private final double[] largest;
+    private final double[] clusters;
+    private final double[] spanning;
+
+    /**
+     * Perform sweeps of an n-by-n grid
+     * @param n size of grids
+     * @param sweeps number of sweeps
+     * @param seed seed of the random streams
+     */
+    public PercolationSweep(int n, int sweeps, long seed) {
+
+        if (n <= 0)
+            throw new IllegalArgumentException("n is out of boundary!");
+
+        if (sweeps <= 0)
+            throw new IllegalArgumentException("number of sweeps is out of boundary!");
+
+        this.gridCount = n * n;
+        this.sweeps = sweeps;
+
+        largest = new double[gridCount + 1];
+        clusters = new double[gridCount + 1];
+        spanning = new double[gridCount + 1];
+
+        SplittableRandom root = new SplittableRandom(seed);
+        int[] sites = new int[gridCount];
+
+        for (int s = 0; s < sweeps; s++) {
+
+            SplittableRandom random = root.split();
+            Percolation grid = new Percolation(n);
+
+            for (int i = 0; i < gridCount; i++) {
+                sites[i] = i;
+            }
+
+            // one step of Fisher-Yates shuffle per opened site
+            for (int k = 0; k < gridCount; k++) {
+
+                int r = random.nextInt(k, gridCount);
+                int site = sites[r];
+                sites[r] = sites[k];
+                sites[k] = site;
+
+                grid.open(site);
+                largest[k + 1] += grid.largestCluster();
+                clusters[k + 1] += grid.numberOfClusters();
+            }
+
+            // spanning is monotone, so only the step where it starts is counted
+            spanning[grid.criticalIndex()] += 1;
+        }
+
+        for (int k = 1; k <= gridCount; k++) {
+            spanning[k] += spanning[k - 1];
+        }
+    }
+
+    /**
+     * @param openSites number of open sites
+     * @return fraction of sweeps spanning with that many open sites
+     */
+    public double spanningProbabilityAtCount(int openSites) {
+        return spanning[checkCount(openSites)] / sweeps;
+    }
+
+    /**
+     * @param openSites number of open sites
+     * @return mean size of the largest cluster with that many open sites
+     */
+    public double largestClusterAtCount(int openSites) {
+        return largest[checkCount(openSites)] / sweeps;
+    }
+
+    /**
+     * @param openSites number of open sites
+     * @return mean number of clusters with that many open sites
+     */
+    public double clusterCountAtCount(int openSites) {
+        return clusters[checkCount(openSites)] / sweeps;
+    }
+
+    /**
+     * @param p probability that a site is open
+     * @return probability that the lattice spans
+     */
+    public double spanningProbability(double p) {
+        return convolve(spanning, p) / sweeps;
+    }
+
+    /**
+     * @param p probability that a site is open
+     * @return mean size of the largest cluster
+     */
+    public double largestCluster(double p) {
+        return convolve(largest, p) / sweeps;
+    }
+
+    /**
+     * @param p probability that a site is open
+     * @return mean number of clusters
+     */
+    public double clusterCount(double p) {
+        return convolve(clusters, p) / sweeps;
+    }
+
+    /**
+     * Helper method, validate a number of open sites
+     * @param openSites number of open sites
+     * @return openSites
+     */
+    private int checkCount(int openSites) {
+        if (openSites < 0 || openSites > gridCount)
+            throw new IllegalArgumentException("Number of open sites is out of boundary!");
+        return openSites;
+    }
+
+    /**
+     * Weight the values at every number of open sites k with the binomial
+     * probability B(gridCount, k, p) that exactly k sites are open.
+     *
+     * The weights are built outwards from the mode with the ratio of
+     * consecutive terms, which avoids factorials, and are normalized
+     * by their sum at the end.
+     *
+     * @param values values indexed by the number of open sites
+     * @param p probability that a site is open
+     * @return expectation of the values
+     */
+    private double convolve(double[] values, double p) {
+
+        if (!(p >= 0.0 && p <= 1.0))
+            throw new IllegalArgumentException("p is out of boundary!");
+
+        if (p == 0.0) return values[0];
+        if (p == 1.0) return values[gridCount];
+
+        int mode = (int) Math.floor(p * (gridCount + 1));
+        if (mode > gridCount) mode = gridCount;
+
+        double ratio = p / (1.0 - p);
+        double sum = 1.0;
+        double total = values[mode];
+
+        double weight = 1.0;
+        for (int k = mode; k < gridCount && weight > EPSILON; k++) {
+            weight *= ratio * (gridCount - k) / (k + 1);
+            sum += weight;
+            total += weight * values[k + 1];
+        }
+
+        weight = 1.0;
+        for (int k = mode; k > 0 && weight > EPSILON; k--) {
+            weight *= k / (ratio * (gridCount - k + 1));
+            sum += weight;
+            total += weight * values[k - 1];
+        }
+
+        return total / sum;
+    }
+
+    /**
+     * test client, prints the curves at p = 0.00, 0.05, ..., 1.00
+     * @param args size of grids, number of sweeps and seed
+     */
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        PercolationSweep sweep = new PercolationSweep(n,
+                                                      Integer.parseInt(args[1]),
+                                                      Long.parseLong(args[2]));
+
+        System.out.printf("p      spanning  largest   clusters\n");
+        for (int i = 0; i <= 20; i++) {
+            double p = i / 20.0;
+            System.out.printf("%.2f   %f  %f  %f\n", p,
+                              sweep.spanningProbability(p),
+                              sweep.largestCluster(p) / (n * n),
+                              sweep.clusterCount(p) / (n * n));
+        }
+    }
+}
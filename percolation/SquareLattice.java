@@ -0,0 +1,88 @@
+/******************************************************************************
+ *  Compilation:  javac SquareLattice.java
+ *  Execution:    none
+ *  Dependencies: Lattice.java
+ *
+ *  An n-by-n square lattice with 4-neighbor connectivity.
+ *
+ *  Site (row, col) has the index (row - 1) * n + (col - 1), like the
+ *  linear indices of Percolation. The system spans from the top row to
+ *  the bottom row. A periodic lattice wraps the columns around, so it is
+ *  a cylinder with the top and bottom rows as its open ends.
+ *
+ *  Author: AlvinZSJ
+ ******************************************************************************/
+
+public class SquareLattice implements Lattice {
+
+    private final int n;
+    private final int siteCount;
+    private final boolean periodic;
+
+    /**
+     * Create an n-by-n lattice with open boundaries
+     * @param n size of lattice
+     */
+    public SquareLattice(int n) {
+        this(n, false);
+    }
+
+    /**
+     * Create an n-by-n lattice
+     * @param n size of lattice
+     * @param periodic whether the columns wrap around
+     */
+    public SquareLattice(int n, boolean periodic) {
+        if (n <= 0 || (long) n * n > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("n is out of boundary!");
+
+        this.n = n;
+        this.siteCount = n * n;
+        this.periodic = periodic;
+    }
+
+    @Override
+    public int siteCount() {
+        return siteCount;
+    }
+
+    /**
+     * Directions are down, right, up and left
+     * @return 4
+     */
+    @Override
+    public int degree() {
+        return 4;
+    }
+
+    @Override
+    public int neighbor(int site, int k) {
+        int col;
+        switch (k) {
+            case 0:
+                return site < siteCount - n ? site + n : -1;
+            case 1:
+                col = site % n;
+                if (col < n - 1) return site + 1;
+                return periodic ? site - col : -1;
+            case 2:
+                return site >= n ? site - n : -1;
+            case 3:
+                col = site % n;
+                if (col > 0) return site - 1;
+                return periodic ? site + n - 1 : -1;
+            default:
+                throw new IllegalArgumentException("Direction is out of boundary!");
+        }
+    }
+
+    @Override
+    public boolean isTop(int site) {
+        return site < n;
+    }
+
+    @Override
+    public boolean isBottom(int site) {
+        return site >= siteCount - n;
+    }
+}
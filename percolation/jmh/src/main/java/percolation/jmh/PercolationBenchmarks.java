@@ -0,0 +1,196 @@
+/******************************************************************************
+ *  Compilation:  mvn -B package
+ *  Execution:    java -jar percolation/jmh/target/benchmarks.jar
+ *                java -jar percolation/jmh/target/benchmarks.jar -prof gc -p n=1024
+ *  Dependencies: Percolation.java
+ *                PercolationStats.java
+ *                org.openjdk.jmh
+ *
+ *  JMH benchmarks of the percolation hot path for n = 64, 128, ..., 4096:
+ *  Percolation.open, isFull, percolates and whole PercolationStats runs.
+ *
+ *  open opens every site of a new grid in a random order, so its time is
+ *  per grid of n * n sites. isFull and percolates are single calls on a
+ *  grid opened up to its percolation threshold, isFull probing random
+ *  sites. PercolationStats is one run of as many trials as make about
+ *  SITES_PER_RUN sites, at least one.
+ *
+ *  The classes of the percolation module live in the default package,
+ *  which a named package cannot import, so they are loaded by name and
+ *  called through method handles. The handles are held in static final
+ *  fields, which the JIT treats as constants and inlines through like
+ *  direct calls.
+ *
+ *  Author: AlvinZSJ
+ ******************************************************************************/
+
+package percolation.jmh;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PercolationBenchmarks {
+
+    // sites per PercolationStats run, trials are scaled down for large n
+    private static final long SITES_PER_RUN = 1L << 22;
+
+    // number of random sites probed by isFull, a power of two
+    private static final int PROBES = 1 << 16;
+
+    // new Percolation(int), open(int), isFull(int, int), percolates()
+    private static final MethodHandle NEW_PERCOLATION;
+    private static final MethodHandle OPEN;
+    private static final MethodHandle IS_FULL;
+    private static final MethodHandle PERCOLATES;
+
+    // new PercolationStats(int, int), mean()
+    private static final MethodHandle NEW_STATS;
+    private static final MethodHandle MEAN;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> percolation = Class.forName("Percolation");
+            Class<?> stats = Class.forName("PercolationStats");
+
+            // the receivers are typed Object, so invokeExact can be used here
+            NEW_PERCOLATION = lookup
+                .findConstructor(percolation, MethodType.methodType(void.class, int.class))
+                .asType(MethodType.methodType(Object.class, int.class));
+            OPEN = lookup
+                .findVirtual(percolation, "open", MethodType.methodType(void.class, int.class))
+                .asType(MethodType.methodType(void.class, Object.class, int.class));
+            IS_FULL = lookup
+                .findVirtual(percolation, "isFull",
+                             MethodType.methodType(boolean.class, int.class, int.class))
+                .asType(MethodType.methodType(boolean.class, Object.class, int.class, int.class));
+            PERCOLATES = lookup
+                .findVirtual(percolation, "percolates", MethodType.methodType(boolean.class))
+                .asType(MethodType.methodType(boolean.class, Object.class));
+
+            NEW_STATS = lookup
+                .findConstructor(stats, MethodType.methodType(void.class, int.class, int.class))
+                .asType(MethodType.methodType(Object.class, int.class, int.class));
+            MEAN = lookup
+                .findVirtual(stats, "mean", MethodType.methodType(double.class))
+                .asType(MethodType.methodType(double.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // size of grids
+    @Param({"64", "128", "256", "512", "1024", "2048", "4096"})
+    private int n;
+
+    // random permutation of the linear site indices
+    private int[] order;
+
+    // a grid opened up to its percolation threshold
+    private Object grid;
+
+    // sites probed by isFull, and the next one to probe
+    private int[] rows;
+    private int[] cols;
+    private int probe;
+
+    // trials of a PercolationStats run
+    private int trials;
+
+    /**
+     * Build the site order, the percolating grid and the probes
+     * @throws Throwable if a call into the percolation classes fails
+     */
+    @Setup
+    public void setUp() throws Throwable {
+
+        int gridCount = n * n;
+        SplittableRandom random = new SplittableRandom(n);
+
+        order = new int[gridCount];
+        for (int i = 0; i < gridCount; i++) {
+            int r = random.nextInt(i + 1);
+            order[i] = order[r];
+            order[r] = i;
+        }
+
+        grid = (Object) NEW_PERCOLATION.invokeExact(n);
+        for (int i = 0; i < gridCount && !(boolean) PERCOLATES.invokeExact(grid); i++) {
+            OPEN.invokeExact(grid, order[i]);
+        }
+
+        rows = new int[PROBES];
+        cols = new int[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            rows[i] = random.nextInt(1, n + 1);
+            cols[i] = random.nextInt(1, n + 1);
+        }
+
+        trials = (int) Math.max(1, SITES_PER_RUN / gridCount);
+    }
+
+    /**
+     * Open every site of a new grid
+     * @return the grid, consumed by JMH
+     * @throws Throwable if Percolation fails
+     */
+    @Benchmark
+    public Object open() throws Throwable {
+        Object g = (Object) NEW_PERCOLATION.invokeExact(n);
+        for (int site : order) {
+            OPEN.invokeExact(g, site);
+        }
+        return g;
+    }
+
+    /**
+     * @return if the next probed site is full, consumed by JMH
+     * @throws Throwable if Percolation fails
+     */
+    @Benchmark
+    public boolean isFull() throws Throwable {
+        int i = probe;
+        probe = (i + 1) & (PROBES - 1);
+        return (boolean) IS_FULL.invokeExact(grid, rows[i], cols[i]);
+    }
+
+    /**
+     * @return if the grid percolates, consumed by JMH
+     * @throws Throwable if Percolation fails
+     */
+    @Benchmark
+    public boolean percolates() throws Throwable {
+        return (boolean) PERCOLATES.invokeExact(grid);
+    }
+
+    /**
+     * Run the trials of one PercolationStats
+     * @return mean of the thresholds, consumed by JMH
+     * @throws Throwable if PercolationStats fails
+     */
+    @Benchmark
+    public double percolationStats() throws Throwable {
+        Object stats = (Object) NEW_STATS.invokeExact(n, trials);
+        return (double) MEAN.invokeExact(stats);
+    }
+}
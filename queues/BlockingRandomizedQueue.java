@@ -0,0 +1,270 @@
+/*************************************************************************
+ *  Compilation:  javac BlockingRandomizedQueue.java
+ *  Execution:    none
+ *  Dependencies: java.util.concurrent.Semaphore
+ *                java.util.concurrent.ThreadLocalRandom
+ *                java.util.concurrent.TimeUnit
+ *                java.util.concurrent.locks.ReentrantLock
+ *
+ *  A bounded, thread-safe randomized queue, where enqueue waits while
+ *  the queue is full and dequeue waits while it is empty.
+ *
+ *  The items are spread over several stripes, each a small randomized
+ *  queue with its own lock, so producers and consumers on different
+ *  stripes do not contend. Two semaphores count the free slots and the
+ *  items of all stripes, and a thread only looks for a stripe after it
+ *  holds a permit, so it always finds one. All waiting is done through
+ *  ReentrantLock and Semaphore, which park virtual threads without
+ *  pinning their carrier, and no synchronized block is used.
+ *
+ *  Dequeue picks a stripe with probability proportional to its number
+ *  of items, read from the stripe counts without locks, and then an item
+ *  uniformly at random within it, so while no other thread changes the
+ *  queue every item is equally likely to be removed. Under contention the
+ *  counts may be slightly out of date, which only shifts the odds between
+ *  stripes by the items added or removed in the meantime.
+ *
+ *  Author: AlvinZSJ
+ *
+ *************************************************************************/
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class BlockingRandomizedQueue<Item> {
+
+    // partitions of the queue
+    private final Stripe[] stripes;
+
+    // maximum number of items
+    private final int capacity;
+
+    // permits for free slots and for items
+    private final Semaphore spaces;
+    private final Semaphore items;
+
+    /**
+     * A fixed size randomized queue guarded by its own lock,
+     * n is only written under the lock but may be read without it
+     */
+    private static final class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Object[] queue;
+        private volatile int n = 0;
+
+        Stripe(int capacity) {
+            queue = new Object[capacity];
+        }
+    }
+
+    /**
+     * Construct an empty queue with one stripe per available processor
+     * @param capacity maximum number of items
+     */
+    public BlockingRandomizedQueue(int capacity) {
+        this(capacity, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Construct an empty queue
+     * @param capacity maximum number of items
+     * @param stripeCount number of stripes
+     */
+    public BlockingRandomizedQueue(int capacity, int stripeCount) {
+
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity is out of boundary!");
+
+        if (stripeCount <= 0)
+            throw new IllegalArgumentException("Number of stripes is out of boundary!");
+
+        int count = Math.min(stripeCount, capacity);
+        this.capacity = capacity;
+        stripes = new Stripe[count];
+
+        // the stripes together hold at least capacity items
+        int perStripe = (capacity + count - 1) / count;
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+
+        spaces = new Semaphore(capacity);
+        items = new Semaphore(0);
+    }
+
+    /**
+     * See if the randomized queue empty
+     * @return empty: 1, otherwise: 0
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return the number of items on the randomized queue,
+     *         approximate while other threads change it
+     */
+    public int size() {
+        return items.availablePermits();
+    }
+
+    /**
+     * @return maximum number of items
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Add the item, waiting while the queue is full
+     * @param item the item to be added
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void enqueue(Item item) throws InterruptedException {
+
+        if (item == null)
+            throw new IllegalArgumentException("The item added is null!");
+
+        spaces.acquire();
+        insert(item);
+        items.release();
+    }
+
+    /**
+     * Add the item, waiting up to the timeout while the queue is full
+     * @param item the item to be added
+     * @param timeout how long to wait
+     * @param unit unit of timeout
+     * @return true if the item was added, false if the time ran out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean enqueue(Item item, long timeout, TimeUnit unit) throws InterruptedException {
+
+        if (item == null)
+            throw new IllegalArgumentException("The item added is null!");
+
+        if (!spaces.tryAcquire(timeout, unit))
+            return false;
+
+        insert(item);
+        items.release();
+        return true;
+    }
+
+    /**
+     * Remove and return a random item, waiting while the queue is empty
+     * @return a random item
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Item dequeue() throws InterruptedException {
+        items.acquire();
+        Item item = remove();
+        spaces.release();
+        return item;
+    }
+
+    /**
+     * Remove and return a random item, waiting up to the timeout
+     * while the queue is empty
+     * @param timeout how long to wait
+     * @param unit unit of timeout
+     * @return a random item, null if the time ran out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Item dequeue(long timeout, TimeUnit unit) throws InterruptedException {
+
+        if (!items.tryAcquire(timeout, unit))
+            return null;
+
+        Item item = remove();
+        spaces.release();
+        return item;
+    }
+
+    /**
+     * Put the item into a stripe with a free slot, the caller holds a
+     * space permit so one exists. The first pass only tries the locks,
+     * later passes wait for them.
+     * @param item the item to be added
+     */
+    private void insert(Item item) {
+        int start = ThreadLocalRandom.current().nextInt(stripes.length);
+
+        for (int i = 0; ; i++) {
+            Stripe s = stripes[(start + i) % stripes.length];
+
+            if (i < stripes.length) {
+                if (!s.lock.tryLock()) continue;
+            }
+            else {
+                s.lock.lock();
+            }
+
+            try {
+                if (s.n < s.queue.length) {
+                    s.queue[s.n++] = item;
+                    return;
+                }
+            }
+            finally {
+                s.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Take a random item, the caller holds an item permit so one exists.
+     * A stripe is picked in proportion to the counts of all stripes, and
+     * if it has been emptied before its lock is taken, the pick is repeated.
+     * @return a random item
+     */
+    private Item remove() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        while (true) {
+            int total = 0;
+            for (Stripe s : stripes) {
+                total += s.n;
+            }
+
+            // the counts were read while other threads took and added items
+            if (total == 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            // walk the counts to the stripe holding the r-th item
+            int r = random.nextInt(total);
+            Stripe chosen = null;
+            for (Stripe s : stripes) {
+                int count = s.n;
+                if (r < count) {
+                    chosen = s;
+                    break;
+                }
+                r -= count;
+            }
+
+            // the counts changed during the walk
+            if (chosen == null) continue;
+
+            chosen.lock.lock();
+            try {
+                if (chosen.n > 0) {
+                    int index = random.nextInt(chosen.n);
+                    @SuppressWarnings("unchecked")
+                    Item item = (Item) chosen.queue[index];
+                    chosen.queue[index] = chosen.queue[chosen.n - 1];
+                    chosen.queue[--chosen.n] = null;
+                    return item;
+                }
+            }
+            finally {
+                chosen.lock.unlock();
+            }
+        }
+    }
+}
@@ -3,6 +3,9 @@
  *  Execution:    none
  *  Dependencies: java.util.Iterator
  *                java.util.NoSuchElementException
+ *                java.util.ConcurrentModificationException
+ *                java.util.Spliterator
+ *                java.util.stream.Stream
  *
  *  A generic data type, which is is a generalization of a stack and a queue
  *  that supports adding and removing items from either the front
@@ -12,8 +15,13 @@
  *
  *************************************************************************/
 
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class Deque<Item> implements Iterable<Item> {
 
@@ -25,6 +33,9 @@ public class Deque<Item> implements Iterable<Item> {
     // size of item array
     private int n = 0;
 
+    // number of changes to the items, checked by the fail-fast iterators
+    private int modCount = 0;
+
     /**
      * Construct an empty deque
      */
@@ -84,6 +95,7 @@ public class Deque<Item> implements Iterable<Item> {
             oldFirst.prev = first;
         }
         n++;
+        modCount++;
     }
 
     /**
@@ -113,6 +125,53 @@ public class Deque<Item> implements Iterable<Item> {
             oldLast.next = last;
         }
         n++;
+        modCount++;
+    }
+
+    /**
+     * Add all items to the end, in iteration order.
+     * All items are checked before any is added, and the new nodes are
+     * linked to each other first and then to the end in one step.
+     * @param items input items
+     */
+    public void addAllLast(Iterable<? extends Item> items) {
+
+        if (items == null)
+            throw new IllegalArgumentException("The items added are null!");
+
+        for (Item item : items) {
+            if (item == null)
+                throw new IllegalArgumentException("The item added is null!");
+        }
+
+        Node chainFirst = null;
+        Node chainLast = null;
+        int count = 0;
+
+        for (Item item : items) {
+            Node node = new Node();
+            node.item = item;
+            node.prev = chainLast;
+
+            if (chainLast == null) chainFirst = node;
+            else                   chainLast.next = node;
+
+            chainLast = node;
+            count++;
+        }
+
+        if (count == 0) return;
+
+        if (isEmpty()) {
+            first = chainFirst;
+        }
+        else {
+            last.next = chainFirst;
+            chainFirst.prev = last;
+        }
+        last = chainLast;
+        n += count;
+        modCount++;
     }
 
     /**
@@ -136,6 +195,7 @@ public class Deque<Item> implements Iterable<Item> {
         }
 
         n--;
+        modCount++;
         return item;
     }
 
@@ -159,16 +219,50 @@ public class Deque<Item> implements Iterable<Item> {
         }
 
         n--;
+        modCount++;
         return item;
     }
 
     /**
+     * A fail-fast iterator, which throws ConcurrentModificationException
+     * if the deque is changed while in use
      * @return an iterator over items in order from front to end
      */
     public Iterator<Item> iterator() {
         return new ListIterator();
     }
 
+    /**
+     * A spliterator over a copy of the items in an array, taken when it
+     * is created, since a linked list cannot be split in the middle
+     * without walking to it
+     * @return a spliterator over items in order from front to end
+     */
+    @Override
+    public Spliterator<Item> spliterator() {
+        Object[] copy = new Object[n];
+        int i = 0;
+        for (Node node = first; node != null; node = node.next) {
+            copy[i++] = node.item;
+        }
+        return Spliterators.spliterator(copy,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+
+    /**
+     * @return a sequential stream over the items
+     */
+    public Stream<Item> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * @return a parallel stream over the items
+     */
+    public Stream<Item> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
     /**
      * Nested class ListIterator to implement iterator
      */
@@ -176,6 +270,8 @@ public class Deque<Item> implements Iterable<Item> {
 
         // current node
         private Node current = first;
+        // modCount of the deque when the iterator was created
+        private final int expectedModCount = modCount;
 
         /**
          *  See if any more items to return
@@ -190,6 +286,9 @@ public class Deque<Item> implements Iterable<Item> {
         @Override
         public Item next() {
 
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException("The Deque was modified!");
+
             if (!hasNext()) throw new NoSuchElementException("No more items!");
 
             // move current reference to next node
@@ -0,0 +1,170 @@
+/*************************************************************************
+ *  Compilation:  javac IntDeque.java
+ *  Execution:    none
+ *  Dependencies: java.util.PrimitiveIterator
+ *                java.util.NoSuchElementException
+ *
+ *  A double ended-queue of int values, the primitive version of
+ *  ResizingArrayDeque.
+ *
+ *  The values are kept in a circular int array, so adding and removing
+ *  neither boxes a value nor allocates a node.
+ *
+ *  Author: AlvinZSJ
+ *
+ *************************************************************************/
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+public class IntDeque implements Iterable<Integer> {
+
+    // circular int array, its length is a power of two
+    private int[] items;
+    // index of the first value
+    private int head = 0;
+    // size of value array
+    private int n = 0;
+
+    /**
+     * Construct an empty deque
+     */
+    public IntDeque() {
+        items = new int[1];
+    }
+
+    /**
+     * See if the deque is empty
+     * @return empty: 1, otherwise: 0
+     */
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    /**
+     * @return the number of values on the deque
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Resize the value array, the first value moves to index 0
+     * @param capacity the size of new array, a power of two
+     */
+    private void resize(int capacity) {
+        int[] newItems = new int[capacity];
+
+        int firstPart = Math.min(n, items.length - head);
+        System.arraycopy(items, head, newItems, 0, firstPart);
+        System.arraycopy(items, 0, newItems, firstPart, n - firstPart);
+
+        items = newItems;
+        head = 0;
+    }
+
+    /**
+     * Add the value to the front
+     * @param item input value
+     */
+    public void addFirstInt(int item) {
+
+        if (n == items.length)
+            resize(2 * items.length);
+
+        head = (head - 1) & (items.length - 1);
+        items[head] = item;
+        n++;
+    }
+
+    /**
+     * Add the value to the end
+     * @param item input value
+     */
+    public void addLastInt(int item) {
+
+        if (n == items.length)
+            resize(2 * items.length);
+
+        items[(head + n) & (items.length - 1)] = item;
+        n++;
+    }
+
+    /**
+     * Remove and return the value from the front
+     * Set the size of array to 1/2 of the original array if 1/4 values left
+     * @return first value
+     */
+    public int removeFirstInt() {
+
+        if (n == 0)
+            throw new NoSuchElementException("The Deque is empty!");
+
+        int item = items[head];
+        head = (head + 1) & (items.length - 1);
+        n--;
+
+        if (n > 0 && n == items.length / 4)
+            resize(items.length / 2);
+
+        return item;
+    }
+
+    /**
+     * Remove and return the value from the end
+     * Set the size of array to 1/2 of the original array if 1/4 values left
+     * @return last value
+     */
+    public int removeLastInt() {
+
+        if (n == 0)
+            throw new NoSuchElementException("The Deque is empty!");
+
+        int item = items[(head + n - 1) & (items.length - 1)];
+        n--;
+
+        if (n > 0 && n == items.length / 4)
+            resize(items.length / 2);
+
+        return item;
+    }
+
+    /**
+     * @return an iterator over values in order from front to end,
+     *         nextInt() returns them without boxing
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new ArrayIterator();
+    }
+
+    /**
+     * Nested class ArrayIterator to implement iterator
+     */
+    private class ArrayIterator implements PrimitiveIterator.OfInt {
+
+        // number of values returned so far
+        private int i = 0;
+
+        /**
+         *  See if any more values to return
+         * @return if any: 1, otherwise: 0
+         */
+        @Override
+        public boolean hasNext() { return i < n; }
+
+        /**
+         * @return next value
+         */
+        @Override
+        public int nextInt() {
+
+            if (!hasNext()) throw new NoSuchElementException("No more items!");
+
+            return items[(head + i++) & (items.length - 1)];
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("No remove operation!"); }
+    }
+}
@@ -0,0 +1,154 @@
+/*************************************************************************
+ *  Compilation:  javac IntRandomizedQueue.java
+ *  Execution:    none
+ *  Dependencies: java.util.PrimitiveIterator
+ *                edu.princeton.cs.algs4.StdRandom
+ *                java.util.NoSuchElementException
+ *
+ *  A randomized queue of int values, the primitive version of
+ *  RandomizedQueue.
+ *
+ *  The values are kept in a resizing int array, so enqueueing and
+ *  dequeueing never box a value.
+ *
+ *  Author: AlvinZSJ
+ *
+ *************************************************************************/
+
+import edu.princeton.cs.algs4.StdRandom;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+public class IntRandomizedQueue implements Iterable<Integer> {
+
+    // int array
+    private int[] queue;
+    // the size of int array
+    private int n = 0;
+
+    /**
+     * Construct an empty randomized queue
+     */
+    public IntRandomizedQueue() {
+        queue = new int[1];
+    }
+
+    /**
+     * See if the randomized queue empty
+     * @return empty: 1, otherwise: 0
+     */
+    public boolean isEmpty() {
+        return  n == 0;
+    }
+
+    /**
+     * @return the number of values on the randomized queue
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Resize the value array
+     * @param capacity the size of new array
+     */
+    private void resize(int capacity) {
+        int[] newQueue = new int[capacity];
+        System.arraycopy(queue, 0, newQueue, 0, n);
+        queue = newQueue;
+    }
+
+    /**
+     * Add the value
+     * Double the array size if it is full
+     * @param item the value to be added
+     */
+    public void enqueueInt(int item) {
+
+        if (n == queue.length)
+            resize(2 * queue.length);
+
+        queue[n++] = item;
+    }
+
+    /**
+     * Remove and return a random value
+     * Set the size of array to 1/2 of the original array if 1/4 values left
+     * @return a random value
+     */
+    public int dequeueInt() {
+
+        if (n == 0)
+            throw new NoSuchElementException("Randomized queue is empty!");
+
+        int index = StdRandom.uniform(0, n);
+
+        int item = queue[index];
+        queue[index] = queue[--n];
+
+        if (n > 0 && n == queue.length/4)
+            resize(queue.length/2);
+
+        return item;
+    }
+
+    /**
+     * @return a random value (but do not remove it)
+     */
+    public int sampleInt() {
+
+        if (n == 0)
+            throw new NoSuchElementException("Randomized queue is empty!");
+
+        return queue[StdRandom.uniform(0, n)];
+    }
+
+    /**
+     * @return an independent iterator over values in random order,
+     *         nextInt() returns them without boxing
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new RandomizedQueueIterator();
+    }
+
+    /**
+     * Nested class to implement IntRandomizedQueue iterator
+     */
+    private class RandomizedQueueIterator implements PrimitiveIterator.OfInt {
+
+        // copy of value array in the iterator
+        private final int[] iterRandQueue;
+        // copy size of the array
+        private int k = n;
+
+        /**
+         * Initialize an array of all values in queue in random order
+         */
+        public RandomizedQueueIterator() {
+            iterRandQueue = new int[k];
+            System.arraycopy(queue, 0, iterRandQueue, 0, k);
+            StdRandom.shuffle(iterRandQueue);
+        }
+
+        /**
+         * See if any more values to return
+         * @return if any: 1, otherwise: 0
+         */
+        @Override
+        public boolean hasNext() { return k != 0; }
+
+        /**
+         * @return next value
+         */
+        @Override
+        public int nextInt() {
+
+            if (!hasNext()) throw new NoSuchElementException("No more items!");
+            return iterRandQueue[--k];
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("No remove operation!"); }
+    }
+}
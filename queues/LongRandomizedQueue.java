@@ -0,0 +1,161 @@
+/*************************************************************************
+ *  Compilation:  javac LongRandomizedQueue.java
+ *  Execution:    none
+ *  Dependencies: java.util.PrimitiveIterator
+ *                edu.princeton.cs.algs4.StdRandom
+ *                java.util.NoSuchElementException
+ *
+ *  A randomized queue of long values, the primitive version of
+ *  RandomizedQueue.
+ *
+ *  The values are kept in a resizing long array, so enqueueing and
+ *  dequeueing never box a value.
+ *
+ *  Author: AlvinZSJ
+ *
+ *************************************************************************/
+
+import edu.princeton.cs.algs4.StdRandom;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+public class LongRandomizedQueue implements Iterable<Long> {
+
+    // long array
+    private long[] queue;
+    // the size of long array
+    private int n = 0;
+
+    /**
+     * Construct an empty randomized queue
+     */
+    public LongRandomizedQueue() {
+        queue = new long[1];
+    }
+
+    /**
+     * See if the randomized queue empty
+     * @return empty: 1, otherwise: 0
+     */
+    public boolean isEmpty() {
+        return  n == 0;
+    }
+
+    /**
+     * @return the number of values on the randomized queue
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Resize the value array
+     * @param capacity the size of new array
+     */
+    private void resize(int capacity) {
+        long[] newQueue = new long[capacity];
+        System.arraycopy(queue, 0, newQueue, 0, n);
+        queue = newQueue;
+    }
+
+    /**
+     * Add the value
+     * Double the array size if it is full
+     * @param item the value to be added
+     */
+    public void enqueueLong(long item) {
+
+        if (n == queue.length)
+            resize(2 * queue.length);
+
+        queue[n++] = item;
+    }
+
+    /**
+     * Remove and return a random value
+     * Set the size of array to 1/2 of the original array if 1/4 values left
+     * @return a random value
+     */
+    public long dequeueLong() {
+
+        if (n == 0)
+            throw new NoSuchElementException("Randomized queue is empty!");
+
+        int index = StdRandom.uniform(0, n);
+
+        long item = queue[index];
+        queue[index] = queue[--n];
+
+        if (n > 0 && n == queue.length/4)
+            resize(queue.length/2);
+
+        return item;
+    }
+
+    /**
+     * @return a random value (but do not remove it)
+     */
+    public long sampleLong() {
+
+        if (n == 0)
+            throw new NoSuchElementException("Randomized queue is empty!");
+
+        return queue[StdRandom.uniform(0, n)];
+    }
+
+    /**
+     * @return an independent iterator over values in random order,
+     *         nextLong() returns them without boxing
+     */
+    public PrimitiveIterator.OfLong iterator() {
+        return new RandomizedQueueIterator();
+    }
+
+    /**
+     * Nested class to implement LongRandomizedQueue iterator
+     */
+    private class RandomizedQueueIterator implements PrimitiveIterator.OfLong {
+
+        // copy of value array in the iterator
+        private final long[] iterRandQueue;
+        // copy size of the array
+        private int k = n;
+
+        /**
+         * Initialize an array of all values in queue in random order
+         */
+        public RandomizedQueueIterator() {
+            iterRandQueue = new long[k];
+            System.arraycopy(queue, 0, iterRandQueue, 0, k);
+
+            // set the copy to random order, StdRandom has no shuffle for long arrays
+            for (int i = k - 1; i > 0; i--) {
+                int r = StdRandom.uniform(0, i + 1);
+                long swap = iterRandQueue[i];
+                iterRandQueue[i] = iterRandQueue[r];
+                iterRandQueue[r] = swap;
+            }
+        }
+
+        /**
+         * See if any more values to return
+         * @return if any: 1, otherwise: 0
+         */
+        @Override
+        public boolean hasNext() { return k != 0; }
+
+        /**
+         * @return next value
+         */
+        @Override
+        public long nextLong() {
+
+            if (!hasNext()) throw new NoSuchElementException("No more items!");
+            return iterRandQueue[--k];
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("No remove operation!"); }
+    }
+}
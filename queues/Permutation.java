@@ -1,18 +1,34 @@
 /*************************************************************************
  *  Compilation:  javac Permutation.java
- *  Execution:    java Permutation k input.txt
+ *  Execution:    java Permutation k < input.txt
+ *                java Permutation -r k [input.txt]
  *  Dependencies: java.util.Iterator
  *                edu.princeton.cs.algs4.StdIn
+ *                edu.princeton.cs.algs4.StdRandom
  *                RandomizedQueue.java
+ *                TokenReader.java
  *
  *  Client program
  *
+ *  With -r the input is sampled with a reservoir of k strings, so the
+ *  memory does not grow with the input, which is read from the file
+ *  if one is given or else from standard input.
+ *
  *  Author: AlvinZSJ
  *
  *************************************************************************/
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Iterator;
 import edu.princeton.cs.algs4.StdIn;
+import edu.princeton.cs.algs4.StdRandom;
 
 public class Permutation {
 
@@ -24,6 +40,19 @@ public class Permutation {
      * @param args k: number of output strings   input.txt: input strings
      */
     public static void main(String[] args) {
+
+        if (args.length > 0 && args[0].equals("-r")) {
+            int k = Integer.parseInt(args[1]);
+            try (TokenReader reader = args.length > 2 ? TokenReader.open(Path.of(args[2]))
+                                                      : TokenReader.stdin()) {
+                print(reservoir(reader, k));
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+
         // RandomizedQueue object declaration
         RandomizedQueue<String> randQueue = new RandomizedQueue<>();
 
@@ -36,10 +65,68 @@ public class Permutation {
         }
 
         int i = 0;
+        // the iterator does not copy the queue to print only k items
         for (Iterator<String> iterator = randQueue.iterator(); iterator.hasNext() && i != k;) {
             System.out.printf("%s\n", iterator.next());
             ++i;
         }
 
     }
+
+    /**
+     * Sample k strings uniformly at random with Algorithm L.
+     *
+     * After the reservoir is full, the number of strings until the next
+     * replacement is drawn from its geometric distribution, and the
+     * strings in between are skipped without being decoded.
+     *
+     * @param reader input strings
+     * @param k number of output strings
+     * @return k of the strings in random order, all of them if there are fewer
+     */
+    private static String[] reservoir(TokenReader reader, int k) {
+
+        if (k < 0)
+            throw new IllegalArgumentException("k is out of boundary!");
+
+        String[] sample = new String[k];
+        int filled = 0;
+        while (filled < k && reader.hasNext()) {
+            sample[filled++] = reader.next();
+        }
+
+        if (filled == k && k > 0) {
+            // 1 - uniform() is in (0, 1], so the logarithm is finite
+            double w = Math.exp(Math.log(1.0 - StdRandom.uniform()) / k);
+
+            while (true) {
+                long skip = (long) Math.floor(Math.log(1.0 - StdRandom.uniform()) / Math.log(1.0 - w));
+
+                if (reader.skip(skip) < skip || !reader.hasNext())
+                    break;
+
+                sample[StdRandom.uniform(k)] = reader.next();
+                w *= Math.exp(Math.log(1.0 - StdRandom.uniform()) / k);
+            }
+        }
+
+        // the reservoir keeps the right strings but not in random order
+        sample = Arrays.copyOf(sample, filled);
+        StdRandom.shuffle(sample);
+        return sample;
+    }
+
+    /**
+     * Print the strings through one buffered writer
+     * @param strings strings to print
+     * @throws IOException if standard output cannot be written
+     */
+    private static void print(String[] strings) throws IOException {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        for (String s : strings) {
+            out.write(s);
+            out.write('\n');
+        }
+        out.flush();
+    }
 }
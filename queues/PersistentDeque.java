@@ -0,0 +1,583 @@
+/*************************************************************************
+ *  Compilation:  javac PersistentDeque.java
+ *  Execution:    none
+ *  Dependencies: java.nio.MappedByteBuffer
+ *                java.nio.channels.FileChannel
+ *                java.nio.file.Files
+ *                java.util.TreeMap
+ *                java.util.NoSuchElementException
+ *                java.util.zip.CRC32C
+ *
+ *  A double ended-queue of byte records kept in memory-mapped segment
+ *  files of a directory, so it survives a restart and its records are
+ *  stored off the heap.
+ *
+ *  The records form one run of bytes between two logical positions,
+ *  head and tail, which are longs and may be negative, since addFirst()
+ *  moves head down past 0. A position lies in segment floor(pos / size)
+ *  at offset floorMod(pos, size), and each segment is a file of that
+ *  size mapped with FileChannel.map, so a record may span segments.
+ *  Each record is framed as [length][payload][length], with the length
+ *  at both ends so it can be taken from either end of the deque.
+ *
+ *  Adding a record writes its bytes straight into the mapped segments,
+ *  without a heap buffer in between. When head or tail leaves a segment
+ *  for good, the segment is renamed into a small pool of free files and
+ *  renamed back when a new segment is needed, instead of deleting and
+ *  creating files all the time.
+ *
+ *  head, tail and the number of records are kept in a mapped metadata
+ *  file, updated after the record bytes. The file has two slots, each
+ *  with a sequence number and a CRC32C checksum, and every update writes
+ *  the slot not holding the latest state. If the process is killed in
+ *  the middle of an update, the checksum of the slot being written no
+ *  longer matches, and reopening takes the other one, so head, tail and
+ *  count always change together. The operating system writes the mapped
+ *  pages back on its own, and force() writes them back at once, so a
+ *  record is only sure to survive a crash of the machine (not just of
+ *  the process) after force().
+ *
+ *  Not thread-safe, like Deque.
+ *
+ *  Author: AlvinZSJ
+ *
+ *************************************************************************/
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+public class PersistentDeque implements Closeable {
+
+    // default segment size, 64 MB
+    private static final int DEFAULT_SEGMENT_SIZE = 1 << 26;
+
+    // free segment files kept for reuse, the others are deleted
+    private static final int MAX_POOLED = 4;
+
+    // metadata layout: magic, segment size, then two slots of
+    // sequence, head, tail, count and the checksum of those four
+    private static final int MAGIC = 0x50445132;
+    private static final int SLOT_START = 8;
+    private static final int SLOT_SIZE = 40;
+    private static final int SLOT_DATA = 32;
+    private static final int META_SIZE = SLOT_START + 2 * SLOT_SIZE;
+
+    // bytes of the length at each end of a record
+    private static final int FRAME = Integer.BYTES;
+
+    private static final String META_FILE = "deque.meta";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String POOL_SUFFIX = ".free";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final MappedByteBuffer meta;
+
+    // mapped segments between head and tail, by segment number
+    private final TreeMap<Long, MappedByteBuffer> segments = new TreeMap<>();
+
+    // free segment files and the number for the next one
+    private final ArrayDeque<Path> pool = new ArrayDeque<>();
+    private long poolCounter = 0;
+
+    // position of the first byte of the first record
+    private long head;
+    // position after the last byte of the last record
+    private long tail;
+    // number of records
+    private long count;
+    // sequence number of the latest metadata slot
+    private long sequence = 0;
+
+    // checksum of the metadata slots
+    private final CRC32C crc = new CRC32C();
+    private final ByteBuffer slotBytes = ByteBuffer.allocate(SLOT_DATA);
+
+    // scratch bytes of a record length
+    private final byte[] lengthBytes = new byte[FRAME];
+
+    private boolean closed = false;
+
+    /**
+     * Open the deque in a directory with 64 MB segments,
+     * creating an empty one if there is none
+     * @param directory directory of the deque files
+     * @throws IOException if the files cannot be opened
+     */
+    public PersistentDeque(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Open the deque in a directory, creating an empty one if there is none
+     * @param directory directory of the deque files
+     * @param segmentSize bytes of each segment file, the same every time
+     *                    the deque is opened
+     * @throws IOException if the files cannot be opened
+     */
+    public PersistentDeque(Path directory, int segmentSize) throws IOException {
+
+        if (directory == null)
+            throw new IllegalArgumentException("Directory is null!");
+
+        if (segmentSize < FRAME)
+            throw new IllegalArgumentException("Segment size is out of boundary!");
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+
+        Path metaPath = directory.resolve(META_FILE);
+        boolean exists = Files.exists(metaPath);
+        try (FileChannel channel = FileChannel.open(metaPath, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            meta = channel.map(FileChannel.MapMode.READ_WRITE, 0, META_SIZE);
+        }
+
+        if (exists && meta.getInt(0) == MAGIC) {
+            if (meta.getInt(4) != segmentSize)
+                throw new IllegalArgumentException("Segment size differs from the stored one!");
+
+            readMeta();
+        }
+        else {
+            meta.putInt(4, segmentSize);
+            writeMeta();
+            meta.putInt(0, MAGIC);
+        }
+
+        recover();
+    }
+
+    /**
+     * Map the segments between head and tail, and move every other
+     * segment file, left behind by a crash before it was released,
+     * into the pool
+     * @throws IOException if a file cannot be opened or moved
+     */
+    private void recover() throws IOException {
+        List<Path> stale = new ArrayList<>();
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+
+                if (name.endsWith(POOL_SUFFIX)) {
+                    pool.add(file);
+                    String number = name.substring(0, name.length() - POOL_SUFFIX.length());
+                    poolCounter = Math.max(poolCounter, Long.parseLong(number) + 1);
+                }
+                else if (name.endsWith(SEGMENT_SUFFIX)) {
+                    String number = name.substring(0, name.length() - SEGMENT_SUFFIX.length());
+                    long id = Long.parseLong(number);
+
+                    if (count > 0 && id >= segmentOf(head) && id <= segmentOf(tail - 1))
+                        segments.put(id, map(file));
+                    else
+                        stale.add(file);
+                }
+            }
+        }
+
+        for (Path file : stale) {
+            free(file);
+        }
+
+        if (count > 0) {
+            for (long id = segmentOf(head); id <= segmentOf(tail - 1); id++) {
+                if (!segments.containsKey(id))
+                    throw new IllegalStateException("Segment " + id + " of the Deque is missing, the Deque is corrupt!");
+            }
+        }
+    }
+
+    /**
+     * See if the deque is empty
+     * @return empty: 1, otherwise: 0
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * @return the number of records on the deque
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * Add the record to the front
+     * @param record input record
+     */
+    public void addFirst(byte[] record) {
+
+        if (record == null)
+            throw new IllegalArgumentException("The item added is null!");
+
+        ensureOpen();
+
+        long start = head - record.length - 2 * FRAME;
+        writeRecord(start, record);
+
+        head = start;
+        count++;
+        writeMeta();
+    }
+
+    /**
+     * Add the record to the end
+     * @param record input record
+     */
+    public void addLast(byte[] record) {
+
+        if (record == null)
+            throw new IllegalArgumentException("The item added is null!");
+
+        ensureOpen();
+
+        long start = tail;
+        writeRecord(start, record);
+
+        tail = start + record.length + 2 * FRAME;
+        count++;
+        writeMeta();
+    }
+
+    /**
+     * Remove and return the record from the front
+     * @return first record
+     */
+    public byte[] removeFirst() {
+
+        ensureOpen();
+
+        if (count == 0)
+            throw new NoSuchElementException("The Deque is empty!");
+
+        int length = readLength(head);
+        checkRecord(head, length);
+
+        byte[] record = new byte[length];
+        read(head + FRAME, record, 0, length);
+
+        head += length + 2 * FRAME;
+        count--;
+        writeMeta();
+        releaseUnused();
+
+        return record;
+    }
+
+    /**
+     * Remove and return the record from the end
+     * @return last record
+     */
+    public byte[] removeLast() {
+
+        ensureOpen();
+
+        if (count == 0)
+            throw new NoSuchElementException("The Deque is empty!");
+
+        int length = readLength(tail - FRAME);
+        long start = tail - length - 2 * FRAME;
+        checkRecord(start, length);
+
+        byte[] record = new byte[length];
+        read(start + FRAME, record, 0, length);
+
+        tail = start;
+        count--;
+        writeMeta();
+        releaseUnused();
+
+        return record;
+    }
+
+    /**
+     * Check that a record read from one of its frames fits between head
+     * and tail, fills them if it is the only one, and that its other frame
+     * holds the same length, which fails when the pages of the record
+     * never reached the disk before a crash
+     * @param start position of the first frame
+     * @param length length read from one frame
+     */
+    private void checkRecord(long start, int length) {
+        if (length < 0 || length > tail - head - 2 * FRAME
+            || start < head || start + length + 2 * FRAME > tail
+            || (count == 1 && length != tail - head - 2 * FRAME)
+            || readLength(start) != length
+            || readLength(start + FRAME + length) != length)
+            throw new IllegalStateException("Record of the Deque is corrupt!");
+    }
+
+    /**
+     * Write every mapped segment and the metadata back to disk
+     */
+    public void force() {
+        ensureOpen();
+
+        for (MappedByteBuffer segment : segments.values()) {
+            segment.force();
+        }
+        meta.force();
+    }
+
+    /**
+     * Write everything back to disk and drop the mappings, which the
+     * operating system unmaps once they are garbage collected
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+
+        force();
+        segments.clear();
+        closed = true;
+    }
+
+    private void ensureOpen() {
+        if (closed)
+            throw new IllegalStateException("The Deque is closed!");
+    }
+
+    /**
+     * @param position logical position
+     * @return number of the segment holding the position
+     */
+    private long segmentOf(long position) {
+        return Math.floorDiv(position, (long) segmentSize);
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(id + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Map a whole segment file, growing it to the segment size
+     * @param file segment file
+     * @return mapped segment
+     * @throws IOException if the file cannot be mapped
+     */
+    private MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    /**
+     * Get a mapped segment, taking a file from the pool
+     * or creating one if it is new
+     * @param id number of the segment
+     * @param create whether a missing segment may be created, only when
+     *               writing, since a segment read from must hold records
+     * @return mapped segment
+     */
+    private MappedByteBuffer segment(long id, boolean create) {
+        MappedByteBuffer segment = segments.get(id);
+        if (segment != null) return segment;
+
+        if (!create)
+            throw new IllegalStateException("Segment " + id + " of the Deque is missing, the Deque is corrupt!");
+
+        try {
+            Path file = segmentPath(id);
+            if (!pool.isEmpty())
+                Files.move(pool.poll(), file, StandardCopyOption.ATOMIC_MOVE);
+
+            segment = map(file);
+            segments.put(id, segment);
+            return segment;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Put a segment file which is no longer used into the pool,
+     * or delete it if the pool is full
+     * @param file segment file
+     * @throws IOException if the file cannot be moved
+     */
+    private void free(Path file) throws IOException {
+        if (pool.size() < MAX_POOLED) {
+            Path pooled = directory.resolve((poolCounter++) + POOL_SUFFIX);
+            Files.move(file, pooled, StandardCopyOption.ATOMIC_MOVE);
+            pool.add(pooled);
+        }
+        else {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Release the mapped segments outside head and tail. An empty deque
+     * starts again from position 0 and keeps no segment.
+     */
+    private void releaseUnused() {
+        if (count == 0) {
+            head = 0;
+            tail = 0;
+            writeMeta();
+        }
+
+        try {
+            while (!segments.isEmpty()) {
+                Map.Entry<Long, MappedByteBuffer> first = segments.firstEntry();
+                if (count > 0 && first.getKey() >= segmentOf(head)) break;
+                segments.pollFirstEntry();
+                free(segmentPath(first.getKey()));
+            }
+            while (!segments.isEmpty()) {
+                Map.Entry<Long, MappedByteBuffer> last = segments.lastEntry();
+                if (last.getKey() <= segmentOf(tail - 1)) break;
+                segments.pollLastEntry();
+                free(segmentPath(last.getKey()));
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Frame a record and write it from a position
+     * @param start position of the first frame
+     * @param record payload
+     */
+    private void writeRecord(long start, byte[] record) {
+        writeLength(start, record.length);
+        write(start + FRAME, record, 0, record.length);
+        writeLength(start + FRAME + record.length, record.length);
+    }
+
+    /**
+     * Copy bytes into the segments from a position, across segment ends
+     */
+    private void write(long position, byte[] src, int offset, int length) {
+        while (length > 0) {
+            int index = (int) Math.floorMod(position, (long) segmentSize);
+            int chunk = Math.min(length, segmentSize - index);
+
+            segment(segmentOf(position), true).put(index, src, offset, chunk);
+
+            position += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Copy bytes out of the segments from a position, across segment ends
+     */
+    private void read(long position, byte[] dst, int offset, int length) {
+        while (length > 0) {
+            int index = (int) Math.floorMod(position, (long) segmentSize);
+            int chunk = Math.min(length, segmentSize - index);
+
+            segment(segmentOf(position), false).get(index, dst, offset, chunk);
+
+            position += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    private void writeLength(long position, int length) {
+        ByteBuffer.wrap(lengthBytes).putInt(0, length);
+        write(position, lengthBytes, 0, FRAME);
+    }
+
+    private int readLength(long position) {
+        read(position, lengthBytes, 0, FRAME);
+        return ByteBuffer.wrap(lengthBytes).getInt(0);
+    }
+
+    /**
+     * @param sequence sequence number of a state
+     * @return offset of the slot holding that state
+     */
+    private static int slotOffset(long sequence) {
+        return SLOT_START + (int) (sequence & 1) * SLOT_SIZE;
+    }
+
+    /**
+     * @return CRC32C of sequence, head, tail and count
+     */
+    private long checksum(long seq, long h, long t, long c) {
+        slotBytes.clear();
+        slotBytes.putLong(seq).putLong(h).putLong(t).putLong(c).flip();
+        crc.reset();
+        crc.update(slotBytes);
+        return crc.getValue();
+    }
+
+    /**
+     * Write head, tail and count to the slot of the next sequence
+     * number, the checksum last, so the other slot keeps the latest
+     * whole state until this one is complete
+     */
+    private void writeMeta() {
+        long next = sequence + 1;
+        int slot = slotOffset(next);
+
+        meta.putLong(slot, next);
+        meta.putLong(slot + 8, head);
+        meta.putLong(slot + 16, tail);
+        meta.putLong(slot + 24, count);
+        meta.putLong(slot + SLOT_DATA, checksum(next, head, tail, count));
+        sequence = next;
+    }
+
+    /**
+     * Load the slot with a matching checksum and the larger sequence
+     * number, and check that its state is possible
+     */
+    private void readMeta() {
+        boolean found = false;
+
+        for (int k = 0; k < 2; k++) {
+            int slot = SLOT_START + k * SLOT_SIZE;
+            long seq = meta.getLong(slot);
+            long h = meta.getLong(slot + 8);
+            long t = meta.getLong(slot + 16);
+            long c = meta.getLong(slot + 24);
+
+            if (meta.getLong(slot + SLOT_DATA) != checksum(seq, h, t, c)) continue;
+            if (found && seq <= sequence) continue;
+
+            found = true;
+            sequence = seq;
+            head = h;
+            tail = t;
+            count = c;
+        }
+
+        if (!found)
+            throw new IllegalStateException("Metadata of the Deque is corrupt!");
+
+        // every record takes at least its two lengths
+        if (count < 0 || head > tail || (count == 0) != (head == tail)
+            || count > (tail - head) / (2 * FRAME))
+            throw new IllegalStateException("Metadata of the Deque is inconsistent!");
+    }
+}
@@ -4,18 +4,41 @@
  *  Dependencies: java.util.Iterator
  *                edu.princeton.cs.algs4.StdRandom
  *                java.util.NoSuchElementException
+ *                java.util.ConcurrentModificationException
+ *                java.util.ArrayList
+ *                java.util.Collection
+ *                java.util.List
+ *                java.util.random.RandomGenerator
+ *                java.util.Spliterator
+ *                java.util.stream.Stream
  *
  *  A data type which is similar to a stack or queue,
  *  except that the item removed is chosen uniformly at random
  *  from items in the data structure
  *
+ *  By default the random indices come from StdRandom, which shares one
+ *  generator between all queues and threads. A queue may instead be given
+ *  its own RandomGenerator (such as a SplittableRandom split per thread),
+ *  and then draws its indices with Lemire's multiply-and-shift method,
+ *  which needs no division in the common case and is unbiased.
+ *
  *  Author: AlvinZSJ
  *
  *************************************************************************/
 
 import edu.princeton.cs.algs4.StdRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.random.RandomGenerator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class RandomizedQueue<Item> implements Iterable<Item> {
 
@@ -23,12 +46,57 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
     private Item[] queue;
     // the size of generic array
     private int n = 0;
+    // source of random indices, null to use StdRandom
+    private final RandomGenerator random;
+    // number of changes to the items, checked by the fail-fast iterator
+    private int modCount = 0;
 
     /**
      * Construct an empty randomized queue
      */
     public RandomizedQueue() {
         queue = (Item[]) new Object[1];
+        random = null;
+    }
+
+    /**
+     * Construct an empty randomized queue drawing from its own generator,
+     * which should not be shared with other threads
+     * @param random source of random indices
+     */
+    public RandomizedQueue(RandomGenerator random) {
+
+        if (random == null)
+            throw new IllegalArgumentException("Random generator is null!");
+
+        queue = (Item[]) new Object[1];
+        this.random = random;
+    }
+
+    /**
+     * Draw an index uniformly from [0, bound) with Lemire's method:
+     * the high half of a random 32-bit value times bound is the index,
+     * and the low half tells whether it falls in the biased remainder,
+     * which is only computed, with a division, when it might.
+     * @param bound number of possible indices, positive
+     * @return a random index
+     */
+    private int uniform(int bound) {
+
+        if (random == null)
+            return StdRandom.uniform(0, bound);
+
+        long m = (random.nextInt() & 0xFFFFFFFFL) * bound;
+        long low = m & 0xFFFFFFFFL;
+
+        if (low < bound) {
+            long threshold = (1L << 32) % bound;
+            while (low < threshold) {
+                m = (random.nextInt() & 0xFFFFFFFFL) * bound;
+                low = m & 0xFFFFFFFFL;
+            }
+        }
+        return (int) (m >>> 32);
     }
 
     /**
@@ -52,10 +120,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
      */
     private void resize(int capacity) {
         Item[] newQueue = (Item[]) new Object[capacity];
-
-        for (int i = 0; i < n; i++) {
-            newQueue[i] = queue[i];
-        }
+        System.arraycopy(queue, 0, newQueue, 0, n);
         queue = newQueue;
     }
 
@@ -73,6 +138,46 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
             resize(2 * queue.length);
 
         queue[n++] = item;
+        modCount++;
+    }
+
+    /**
+     * Add all items of an array
+     * Double the array size until they fit, then copy them at once
+     * @param items the items to be added
+     */
+    public void enqueueAll(Item[] items) {
+
+        if (items == null)
+            throw new IllegalArgumentException("The items added are null!");
+
+        for (Item item : items) {
+            if (item == null)
+                throw new IllegalArgumentException("The item added is null!");
+        }
+
+        int capacity = queue.length;
+        while (capacity < n + items.length) {
+            capacity *= 2;
+        }
+        if (capacity != queue.length)
+            resize(capacity);
+
+        System.arraycopy(items, 0, queue, n, items.length);
+        n += items.length;
+        modCount++;
+    }
+
+    /**
+     * Add all items of a collection
+     * @param items the items to be added
+     */
+    public void enqueueAll(Collection<? extends Item> items) {
+
+        if (items == null)
+            throw new IllegalArgumentException("The items added are null!");
+
+        enqueueAll((Item[]) items.toArray());
     }
 
     /**
@@ -85,11 +190,12 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         if (n == 0)
             throw new NoSuchElementException("Randomized queue is empty!");
 
-        int index = StdRandom.uniform(0, n);
+        int index = uniform(n);
 
         Item item = queue[index];
         queue[index] = queue[n - 1];
         queue[--n] = null;
+        modCount++;
 
         if (n > 0 && n == queue.length/4)
             resize(queue.length/2);
@@ -105,18 +211,155 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         if (n == 0)
             throw new NoSuchElementException("Randomized queue is empty!");
 
-        int index = StdRandom.uniform(0, n);
+        int index = uniform(n);
 
         return queue[index];
     }
 
     /**
-     * @return an independent iterator over items in random order
+     * Remove and return k random items
+     * Shrink the array once afterwards, as far as dequeue() would have
+     * @param k number of items
+     * @return k distinct random items
+     */
+    public List<Item> dequeue(int k) {
+
+        if (k < 0)
+            throw new IllegalArgumentException("k is out of boundary!");
+
+        if (k > n)
+            throw new NoSuchElementException("Randomized queue has fewer than k items!");
+
+        List<Item> items = new ArrayList<>(k);
+        for (int i = 0; i < k; i++) {
+            int index = uniform(n);
+            items.add(queue[index]);
+            queue[index] = queue[n - 1];
+            queue[--n] = null;
+        }
+        modCount++;
+
+        int capacity = queue.length;
+        while (n > 0 && n <= capacity / 4) {
+            capacity /= 2;
+        }
+        if (capacity != queue.length)
+            resize(capacity);
+
+        return items;
+    }
+
+    /**
+     * @param k number of items
+     * @return k random items, drawn with replacement (but do not remove them)
+     */
+    public List<Item> sample(int k) {
+        return sample(k, true);
+    }
+
+    /**
+     * Draw k random items without removing them.
+     * Without replacement the drawn items are swapped to the end of the
+     * array (a partial Fisher-Yates shuffle), which needs no extra memory
+     * since the order of the array does not matter, but it does count as
+     * a change for the fail-fast iterator.
+     * @param k number of items
+     * @param replacement whether an item may be drawn more than once
+     * @return k random items
+     */
+    public List<Item> sample(int k, boolean replacement) {
+
+        if (k < 0)
+            throw new IllegalArgumentException("k is out of boundary!");
+
+        if (k > 0 && n == 0)
+            throw new NoSuchElementException("Randomized queue is empty!");
+
+        if (!replacement && k > n)
+            throw new NoSuchElementException("Randomized queue has fewer than k items!");
+
+        List<Item> items = new ArrayList<>(k);
+        for (int i = 0; i < k; i++) {
+            if (replacement) {
+                items.add(queue[uniform(n)]);
+            }
+            else {
+                int last = n - 1 - i;
+                int index = uniform(last + 1);
+                Item item = queue[index];
+                queue[index] = queue[last];
+                queue[last] = item;
+                items.add(item);
+            }
+        }
+
+        if (!replacement && k > 0)
+            modCount++;
+
+        return items;
+    }
+
+    /**
+     * A fail-fast iterator over the live array in a uniformly random order,
+     * which does not copy the queue, so getting the first k items costs
+     * O(k) time and memory. It throws ConcurrentModificationException
+     * if the queue is changed while in use.
+     * @return an iterator over items in random order
      */
     public Iterator<Item> iterator() {
+        return new LazyRandomIterator();
+    }
+
+    /**
+     * An iterator over a shuffled copy of the items, taken when it is
+     * created, which costs O(n) memory but is independent of any later
+     * change to the queue
+     * @return an independent iterator over items in random order
+     */
+    public Iterator<Item> snapshotIterator() {
         return new RandomizedQueueIterator();
     }
 
+    /**
+     * @return a copy of the items in random order
+     */
+    private Item[] shuffledCopy() {
+        Item[] copy = (Item[]) new Object[n];
+        System.arraycopy(queue, 0, copy, 0, n);
+
+        for (int i = n - 1; i > 0; i--) {
+            int j = uniform(i + 1);
+            Item swap = copy[i];
+            copy[i] = copy[j];
+            copy[j] = swap;
+        }
+        return copy;
+    }
+
+    /**
+     * A spliterator over a copy of the items shuffled when it is created,
+     * so it is sized and splits into halves of the copy for parallel streams
+     * @return a spliterator over items in random order
+     */
+    @Override
+    public Spliterator<Item> spliterator() {
+        return Spliterators.spliterator(shuffledCopy(), Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+
+    /**
+     * @return a sequential stream over the items
+     */
+    public Stream<Item> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * @return a parallel stream over the items
+     */
+    public Stream<Item> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
     /**
      * Nested class to implement RandomizedQueue iterator
      */
@@ -131,23 +374,59 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
          * Initialize an array of all items in queue in random order
          */
         public RandomizedQueueIterator() {
+            iterRandQueue = shuffledCopy();
+        }
 
-            iterRandQueue = (Item[]) new Object[k];
+        /**
+         * See if any more items to return
+         * @return if any: 1, otherwise: 0
+         */
+        @Override
+        public boolean hasNext() { return k != 0; }
 
-            for (int i = 0; i < k; i++) {
-                iterRandQueue[i] = queue[i];
-            }
+        /**
+         * @return next item
+         */
+        @Override
+        public Item next() {
 
-            // set the copy to random order
-            StdRandom.shuffle(iterRandQueue);
+            if (!hasNext()) throw new NoSuchElementException("No more items!");
+            return iterRandQueue[--k];
         }
 
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("No remove operation!"); }
+    }
+
+    /**
+     * Nested class to implement the lazy iterator.
+     *
+     * A Fisher-Yates shuffle of the indices 0 .. n-1 done one step per
+     * item: step j swaps position j with a random position in [j, n) and
+     * returns the index landing at j, so the order is uniform over all n!
+     * orders. The index array is never built, only the positions which
+     * differ from their own index are kept in a sparse map, so the first
+     * k items cost O(k) time and memory.
+     */
+    private class LazyRandomIterator implements Iterator<Item> {
+
+        // number of items when the iterator was created
+        private final int size = n;
+        // modCount of the queue when the iterator was created
+        private final int expectedModCount = modCount;
+        // positions whose index was swapped away, the others hold their own
+        private final IntIntMap swapped = new IntIntMap();
+
+        // number of items returned
+        private int returned = 0;
+
         /**
          * See if any more items to return
          * @return if any: 1, otherwise: 0
          */
         @Override
-        public boolean hasNext() { return k != 0; }
+        public boolean hasNext() { return returned < size; }
 
         /**
          * @return next item
@@ -155,8 +434,20 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         @Override
         public Item next() {
 
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException("Randomized queue was modified!");
+
             if (!hasNext()) throw new NoSuchElementException("No more items!");
-            return iterRandQueue[--k];
+
+            int j = returned++;
+            int r = j + uniform(size - j);
+
+            // swap positions j and r, position j is never read again
+            int index = swapped.get(r, r);
+            if (r != j)
+                swapped.put(r, swapped.get(j, j));
+
+            return queue[index];
         }
 
         @Override
@@ -164,6 +455,88 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
             throw new UnsupportedOperationException("No remove operation!"); }
     }
 
+    /**
+     * Open-addressing map from non-negative int keys to int values,
+     * with linear probing, so no key or value is boxed
+     */
+    private static final class IntIntMap {
+
+        private static final int EMPTY = -1;
+
+        private int[] keys;
+        private int[] values;
+        private int mask;
+        // 32 - log2(capacity), to take the top bits of the hash
+        private int shift;
+        private int size = 0;
+
+        IntIntMap() {
+            allocate(16);
+        }
+
+        private void allocate(int capacity) {
+            keys = new int[capacity];
+            values = new int[capacity];
+            mask = capacity - 1;
+            shift = Integer.numberOfLeadingZeros(capacity) + 1;
+            Arrays.fill(keys, EMPTY);
+        }
+
+        /**
+         * @param key non-negative key
+         * @return first slot to probe, a Fibonacci hash of the key
+         */
+        private int slot(int key) {
+            return (key * 0x9E3779B9) >>> shift;
+        }
+
+        /**
+         * @param key non-negative key
+         * @param absent value to return if the key is not in the map
+         * @return value of the key
+         */
+        int get(int key, int absent) {
+            for (int i = slot(key); ; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+                if (keys[i] == EMPTY) return absent;
+            }
+        }
+
+        /**
+         * Set the value of a key, doubling the table when half full
+         * @param key non-negative key
+         * @param value value of the key
+         */
+        void put(int key, int value) {
+            int i = slot(key);
+            while (keys[i] != EMPTY && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+
+            if (keys[i] == EMPTY) {
+                if (2 * (size + 1) > keys.length) {
+                    grow();
+                    put(key, value);
+                    return;
+                }
+                keys[i] = key;
+                size++;
+            }
+            values[i] = value;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+
+            allocate(2 * oldKeys.length);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
     /**
      * Test for the nested iterators
      * @param args
@@ -0,0 +1,348 @@
+/*************************************************************************
+ *  Compilation:  javac ResizingArrayDeque.java
+ *  Execution:    none
+ *  Dependencies: java.util.Iterator
+ *                java.util.NoSuchElementException
+ *                java.util.ConcurrentModificationException
+ *                java.util.Collection
+ *                java.util.Spliterator
+ *                java.util.stream.Stream
+ *
+ *  A double ended-queue with the same API as Deque, backed by a circular
+ *  array instead of a linked list.
+ *
+ *  The capacity is always a power of two, so an index wraps around with
+ *  a mask. The array doubles when it is full and halves when it is
+ *  one-quarter full, like RandomizedQueue, so an item costs one array
+ *  slot instead of a Node with three references.
+ *
+ *  Author: AlvinZSJ
+ *
+ *************************************************************************/
+
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class ResizingArrayDeque<Item> implements Iterable<Item> {
+
+    // circular generic array, its length is a power of two
+    private Item[] items;
+    // index of the first item
+    private int head = 0;
+    // size of item array
+    private int n = 0;
+
+    // number of changes to the items, checked by the fail-fast iterators
+    private int modCount = 0;
+
+    /**
+     * Construct an empty deque
+     */
+    public ResizingArrayDeque() {
+        items = (Item[]) new Object[1];
+    }
+
+    /**
+     * See if the deque is empty
+     * @return empty: 1, otherwise: 0
+     */
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    /**
+     * @return the number of items on the deque
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Resize the item array, the first item moves to index 0
+     * @param capacity the size of new array, a power of two
+     */
+    private void resize(int capacity) {
+        Item[] newItems = (Item[]) new Object[capacity];
+
+        // copy the part up to the end of the array, then the wrapped part
+        int firstPart = Math.min(n, items.length - head);
+        System.arraycopy(items, head, newItems, 0, firstPart);
+        System.arraycopy(items, 0, newItems, firstPart, n - firstPart);
+
+        items = newItems;
+        head = 0;
+    }
+
+    /**
+     * Add the item to the front
+     * @param item input item
+     */
+    public void addFirst(Item item) {
+
+        if (item == null) {
+            throw new IllegalArgumentException("The added item is null!");
+        }
+
+        if (n == items.length)
+            resize(2 * items.length);
+
+        head = (head - 1) & (items.length - 1);
+        items[head] = item;
+        n++;
+        modCount++;
+    }
+
+    /**
+     * Add the item to the end
+     * @param item input item
+     */
+    public void addLast(Item item) {
+
+        if (item == null) {
+            throw new IllegalArgumentException("The item added is null!");
+        }
+
+        if (n == items.length)
+            resize(2 * items.length);
+
+        items[(head + n) & (items.length - 1)] = item;
+        n++;
+        modCount++;
+    }
+
+    /**
+     * Add all items of an array to the end, in order
+     * Double the array size until they fit, then copy them at once
+     * @param added the items to be added
+     */
+    public void addAllLast(Item[] added) {
+
+        if (added == null)
+            throw new IllegalArgumentException("The items added are null!");
+
+        for (Item item : added) {
+            if (item == null)
+                throw new IllegalArgumentException("The item added is null!");
+        }
+
+        int capacity = items.length;
+        while (capacity < n + added.length) {
+            capacity *= 2;
+        }
+        if (capacity != items.length)
+            resize(capacity);
+
+        // copy up to the end of the array, then wrap around to its start
+        int tail = (head + n) & (items.length - 1);
+        int firstPart = Math.min(added.length, items.length - tail);
+        System.arraycopy(added, 0, items, tail, firstPart);
+        System.arraycopy(added, firstPart, items, 0, added.length - firstPart);
+        n += added.length;
+        modCount++;
+    }
+
+    /**
+     * Add all items of a collection to the end, in iteration order
+     * @param added the items to be added
+     */
+    public void addAllLast(Collection<? extends Item> added) {
+
+        if (added == null)
+            throw new IllegalArgumentException("The items added are null!");
+
+        addAllLast((Item[]) added.toArray());
+    }
+
+    /**
+     * Remove and return the item from the front
+     * Set the size of array to 1/2 of the original array if 1/4 items left
+     * @return first item
+     */
+    public Item removeFirst() {
+
+        if (n == 0)
+            throw new NoSuchElementException("The Deque is empty!");
+
+        Item item = items[head];
+        items[head] = null;
+        head = (head + 1) & (items.length - 1);
+        n--;
+        modCount++;
+
+        if (n > 0 && n == items.length / 4)
+            resize(items.length / 2);
+
+        return item;
+    }
+
+    /**
+     * Remove and return the item from the end
+     * Set the size of array to 1/2 of the original array if 1/4 items left
+     * @return last item
+     */
+    public Item removeLast() {
+
+        if (n == 0)
+            throw new NoSuchElementException("The Deque is empty!");
+
+        int last = (head + n - 1) & (items.length - 1);
+        Item item = items[last];
+        items[last] = null;
+        n--;
+        modCount++;
+
+        if (n > 0 && n == items.length / 4)
+            resize(items.length / 2);
+
+        return item;
+    }
+
+    /**
+     * A fail-fast iterator, which throws ConcurrentModificationException
+     * if the deque is changed while in use
+     * @return an iterator over items in order from front to end
+     */
+    public Iterator<Item> iterator() {
+        return new ArrayIterator();
+    }
+
+    /**
+     * A fail-fast spliterator over the live array, which splits the range
+     * of items into halves without copying them.
+     * @return a spliterator over items in order from front to end
+     */
+    @Override
+    public Spliterator<Item> spliterator() {
+        return new RingSpliterator(0, n, modCount);
+    }
+
+    /**
+     * @return a sequential stream over the items
+     */
+    public Stream<Item> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * @return a parallel stream over the items
+     */
+    public Stream<Item> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Spliterator over a range of positions from the front of the
+     * circular array, the position i is at index (head + i) & mask
+     */
+    private final class RingSpliterator implements Spliterator<Item> {
+
+        // next position and the position after the last one
+        private int origin;
+        private final int fence;
+        // modCount of the deque when the spliterator was created
+        private final int expectedModCount;
+
+        RingSpliterator(int origin, int fence, int expectedModCount) {
+            this.origin = origin;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException("The Deque was modified!");
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Item> action) {
+
+            if (action == null)
+                throw new NullPointerException("Action is null!");
+
+            checkForComodification();
+            if (origin >= fence) return false;
+
+            action.accept(items[(head + origin++) & (items.length - 1)]);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Item> action) {
+
+            if (action == null)
+                throw new NullPointerException("Action is null!");
+
+            checkForComodification();
+
+            int mask = items.length - 1;
+            for (int i = origin; i < fence; i++) {
+                action.accept(items[(head + i) & mask]);
+            }
+            origin = fence;
+
+            checkForComodification();
+        }
+
+        @Override
+        public Spliterator<Item> trySplit() {
+            int mid = (origin + fence) >>> 1;
+            if (mid <= origin) return null;
+
+            Spliterator<Item> prefix = new RingSpliterator(origin, mid, expectedModCount);
+            origin = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - origin;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.NONNULL;
+        }
+    }
+
+    /**
+     * Nested class ArrayIterator to implement iterator
+     */
+    private class ArrayIterator implements Iterator<Item> {
+
+        // number of items returned so far
+        private int i = 0;
+        // modCount of the deque when the iterator was created
+        private final int expectedModCount = modCount;
+
+        /**
+         *  See if any more items to return
+         * @return if any: 1, otherwise: 0
+         */
+        @Override
+        public boolean hasNext() { return i < n; }
+
+        /**
+         * @return next item
+         */
+        @Override
+        public Item next() {
+
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException("The Deque was modified!");
+
+            if (!hasNext()) throw new NoSuchElementException("No more items!");
+
+            return items[(head + i++) & (items.length - 1)];
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("No remove operation!"); }
+    }
+}
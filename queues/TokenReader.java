@@ -0,0 +1,168 @@
+/*************************************************************************
+ *  Compilation:  javac TokenReader.java
+ *  Execution:    none
+ *  Dependencies: java.nio.ByteBuffer
+ *                java.nio.channels.ReadableByteChannel
+ *                java.util.NoSuchElementException
+ *
+ *  Reads whitespace separated UTF-8 tokens from a channel through one
+ *  reusable 64 KB buffer, like StdIn.readString() without a Scanner
+ *  and its regular expressions.
+ *
+ *  skip() passes over tokens without decoding them, so a caller which
+ *  only keeps some of the tokens does not allocate a String for the rest.
+ *
+ *  Author: AlvinZSJ
+ *
+ *************************************************************************/
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+public class TokenReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] data = buffer.array();
+
+    // next byte to read and end of the valid bytes in data
+    private int pos = 0;
+    private int limit = 0;
+
+    // bytes of the token being read, grown on demand
+    private byte[] token = new byte[64];
+
+    /**
+     * Read tokens from a channel
+     * @param channel input channel
+     */
+    public TokenReader(ReadableByteChannel channel) {
+        if (channel == null)
+            throw new IllegalArgumentException("Channel is null!");
+        this.channel = channel;
+    }
+
+    /**
+     * @return a reader of standard input
+     */
+    public static TokenReader stdin() {
+        return new TokenReader(Channels.newChannel(System.in));
+    }
+
+    /**
+     * @param file input file
+     * @return a reader of the file
+     * @throws IOException if the file cannot be opened
+     */
+    public static TokenReader open(Path file) throws IOException {
+        return new TokenReader(FileChannel.open(file));
+    }
+
+    /**
+     * @param b byte of input
+     * @return whether b is ASCII whitespace
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0x0B;
+    }
+
+    /**
+     * Read the next block of input into the buffer
+     * @return false at the end of input
+     */
+    private boolean fill() {
+        try {
+            buffer.clear();
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+
+            pos = 0;
+            limit = Math.max(read, 0);
+            return read > 0;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Move to the first byte of the next token
+     * @return false if no token is left
+     */
+    private boolean skipWhitespace() {
+        while (true) {
+            while (pos < limit) {
+                if (!isWhitespace(data[pos])) return true;
+                pos++;
+            }
+            if (!fill()) return false;
+        }
+    }
+
+    /**
+     * See if any more tokens to read
+     * @return if any: 1, otherwise: 0
+     */
+    public boolean hasNext() {
+        return skipWhitespace();
+    }
+
+    /**
+     * @return next token
+     */
+    public String next() {
+
+        if (!skipWhitespace())
+            throw new NoSuchElementException("No more tokens!");
+
+        int length = 0;
+        do {
+            int start = pos;
+            while (pos < limit && !isWhitespace(data[pos])) pos++;
+
+            int count = pos - start;
+            if (length + count > token.length)
+                token = Arrays.copyOf(token, Math.max(2 * token.length, length + count));
+
+            System.arraycopy(data, start, token, length, count);
+            length += count;
+        } while (pos == limit && fill());
+
+        return new String(token, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Skip tokens without decoding them
+     * @param count number of tokens to skip
+     * @return number of tokens skipped, less than count at the end of input
+     */
+    public long skip(long count) {
+        for (long i = 0; i < count; i++) {
+
+            if (!skipWhitespace()) return i;
+
+            do {
+                while (pos < limit && !isWhitespace(data[pos])) pos++;
+            } while (pos == limit && fill());
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
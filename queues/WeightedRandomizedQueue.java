@@ -0,0 +1,246 @@
+/*************************************************************************
+ *  Compilation:  javac WeightedRandomizedQueue.java
+ *  Execution:    none
+ *  Dependencies: edu.princeton.cs.algs4.StdRandom
+ *                java.util.NoSuchElementException
+ *                java.util.random.RandomGenerator
+ *
+ *  A randomized queue whose items carry positive weights, where the item
+ *  removed or sampled is chosen with probability proportional to its
+ *  weight.
+ *
+ *  The items and weights are kept in resizing arrays like RandomizedQueue,
+ *  and a Fenwick tree over the weights gives the prefix sums. A draw
+ *  walks down the tree by binary lifting to the item whose prefix sum
+ *  range holds a random point of the total weight, and a removal moves
+ *  the last item into the hole. enqueue and sample take O(log n) time,
+ *  dequeue O(log^2 n).
+ *
+ *  Subtracting a removed weight from the tree nodes above it would leave
+ *  them with the rounding error of that weight, and after a dominant
+ *  weight leaves, the error can be as large as the small weights left
+ *  behind. So a removal instead recomputes the nodes above the two
+ *  changed positions from their children, which never held the removed
+ *  weight. The tree is also rebuilt from the weights in O(n) at every
+ *  resize.
+ *
+ *  Author: AlvinZSJ
+ *
+ *************************************************************************/
+
+import edu.princeton.cs.algs4.StdRandom;
+import java.util.NoSuchElementException;
+import java.util.random.RandomGenerator;
+
+public class WeightedRandomizedQueue<Item> {
+
+    // generic array
+    private Item[] queue;
+    // weight of each item
+    private double[] weights;
+    // Fenwick tree over weights, 1-based, tree[i] holds the sum of
+    // weights (i - (i & -i), i]
+    private double[] tree;
+    // the size of generic array
+    private int n = 0;
+    // source of random points, null to use StdRandom
+    private final RandomGenerator random;
+
+    /**
+     * Construct an empty weighted randomized queue
+     */
+    public WeightedRandomizedQueue() {
+        this.random = null;
+        allocate(1);
+    }
+
+    /**
+     * Construct an empty weighted randomized queue drawing from its own
+     * generator, which should not be shared with other threads
+     * @param random source of random points
+     */
+    public WeightedRandomizedQueue(RandomGenerator random) {
+
+        if (random == null)
+            throw new IllegalArgumentException("Random generator is null!");
+
+        this.random = random;
+        allocate(1);
+    }
+
+    /**
+     * See if the randomized queue empty
+     * @return empty: 1, otherwise: 0
+     */
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    /**
+     * @return the number of items on the randomized queue
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * @return the sum of the weights of all items
+     */
+    public double totalWeight() {
+        return tree[queue.length];
+    }
+
+    /**
+     * Create empty arrays
+     * @param capacity the size of new arrays, a power of two
+     */
+    private void allocate(int capacity) {
+        queue = (Item[]) new Object[capacity];
+        weights = new double[capacity];
+        tree = new double[capacity + 1];
+    }
+
+    /**
+     * Resize the arrays and rebuild the tree
+     * @param capacity the size of new arrays, a power of two
+     */
+    private void resize(int capacity) {
+        Item[] oldQueue = queue;
+        double[] oldWeights = weights;
+
+        allocate(capacity);
+        System.arraycopy(oldQueue, 0, queue, 0, n);
+        System.arraycopy(oldWeights, 0, weights, 0, n);
+
+        // each node passes its sum on to its parent, O(n) in total
+        for (int i = 1; i <= capacity; i++) {
+            if (i <= n) tree[i] += weights[i - 1];
+
+            int parent = i + (i & -i);
+            if (parent <= capacity) tree[parent] += tree[i];
+        }
+    }
+
+    /**
+     * Add delta to the weight of an index in the tree
+     * @param index index of the item
+     * @param delta change of the weight
+     */
+    private void update(int index, double delta) {
+        for (int i = index + 1; i <= queue.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * Recompute the tree nodes above an index from the weight at the index
+     * and the children of each node. The children of node i are the nodes
+     * i - 1, i - 2, i - 4, ... above i - (i & -i), and a child which is on
+     * the path itself has just been recomputed.
+     * @param index index of the item whose weight changed
+     */
+    private void refresh(int index) {
+        for (int i = index + 1; i <= queue.length; i += i & -i) {
+            double sum = weights[i - 1];
+            for (int child = 1; child < (i & -i); child <<= 1) {
+                sum += tree[i - child];
+            }
+            tree[i] = sum;
+        }
+    }
+
+    /**
+     * Find the item whose prefix sum range holds the point, by binary
+     * lifting from the largest power of two down
+     * @param point a point in [0, total weight)
+     * @return index of the item
+     */
+    private int find(double point) {
+        int index = 0;
+        for (int step = queue.length; step > 0; step >>= 1) {
+            int next = index + step;
+            if (next <= queue.length && tree[next] <= point) {
+                index = next;
+                point -= tree[next];
+            }
+        }
+
+        // rounding may step past the last item
+        return Math.min(index, n - 1);
+    }
+
+    /**
+     * @return index of an item chosen in proportion to its weight
+     */
+    private int draw() {
+        double u = random == null ? StdRandom.uniform() : random.nextDouble();
+        return find(u * totalWeight());
+    }
+
+    /**
+     * Add the item
+     * Double the array size if it is full
+     * @param item the item to be added
+     * @param weight weight of the item, positive and finite
+     */
+    public void enqueue(Item item, double weight) {
+
+        if (item == null)
+            throw new IllegalArgumentException("The item added is null!");
+
+        if (!(weight > 0) || Double.isInfinite(weight))
+            throw new IllegalArgumentException("Weight is out of boundary!");
+
+        if (n == queue.length)
+            resize(2 * queue.length);
+
+        queue[n] = item;
+        weights[n] = weight;
+        update(n, weight);
+        n++;
+    }
+
+    /**
+     * Remove and return a random item, chosen in proportion to its weight
+     * Set the size of array to 1/2 of the original array if 1/4 items left
+     * @return a random item
+     */
+    public Item dequeue() {
+
+        if (n == 0)
+            throw new NoSuchElementException("Randomized queue is empty!");
+
+        int index = draw();
+        int last = n - 1;
+        Item item = queue[index];
+
+        // move the last item into the hole
+        queue[index] = queue[last];
+        weights[index] = weights[last];
+        queue[last] = null;
+        weights[last] = 0.0;
+        n--;
+
+        // the paths of index and last meet, so the second pass also
+        // recomputes the shared nodes from children refreshed by the first
+        refresh(index);
+        refresh(last);
+
+        if (n > 0 && n == queue.length/4)
+            resize(queue.length/2);
+
+        return item;
+    }
+
+    /**
+     * @return a random item chosen in proportion to its weight
+     *         (but do not remove it)
+     */
+    public Item sample() {
+
+        if (n == 0)
+            throw new NoSuchElementException("Randomized queue is empty!");
+
+        return queue[draw()];
+    }
+}
@@ -0,0 +1,225 @@
+/*************************************************************************
+ *  Compilation:  javac WorkStealingDeque.java
+ *  Execution:    none
+ *  Dependencies: java.util.concurrent.atomic.AtomicLong
+ *                java.util.concurrent.atomic.AtomicReferenceArray
+ *                java.util.NoSuchElementException
+ *
+ *  A lock-free double ended-queue for work-stealing schedulers,
+ *  after the Chase-Lev deque.
+ *
+ *  One owner thread adds and removes items at the end, like a stack,
+ *  while any number of thief threads remove items from the front.
+ *  The owner only needs a compare-and-set when it races a thief for the
+ *  last item, and thieves race each other with one compare-and-set on
+ *  the front index.
+ *
+ *  A slot is cleared by the thread which takes its item, so the buffer
+ *  does not keep finished tasks alive: the thief which wins an item
+ *  clears the slot with a compare-and-set, and the owner clears the
+ *  slots it pops. When the owner loses the race for the last item, the
+ *  winning thief clears it, a second clear by the owner could remove
+ *  the same item pushed again. The owner never writes over a slot which
+ *  a thief has not cleared yet, it grows the buffer instead, so the
+ *  late compare-and-set of a thief can never remove a newer item.
+ *
+ *  Growing moves every item to the larger buffer, each with a
+ *  compare-and-set that empties the old slot, so no copy is left behind.
+ *  A thief whose clear fails knows its item has been moved, and waits
+ *  for the owner to publish the larger buffer to clear it there.
+ *
+ *  addLast() and removeLast() must only be called by the owner thread,
+ *  removeFirst() may be called by any thread. isEmpty() and size() read
+ *  both ends without a lock, so while other threads work on the deque
+ *  they are only a snapshot that may be out of date at once.
+ *
+ *  Author: AlvinZSJ
+ *
+ *************************************************************************/
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class WorkStealingDeque<Item> {
+
+    // circular array of items, replaced by a larger one when it is full
+    private volatile Buffer<Item> buffer;
+
+    // index of the first item, advanced by thieves and by the owner's last pop
+    private final AtomicLong top = new AtomicLong();
+
+    // index after the last item, only written by the owner
+    private volatile long bottom = 0;
+
+    /**
+     * Construct an empty deque
+     */
+    public WorkStealingDeque() {
+        buffer = new Buffer<>(16);
+    }
+
+    /**
+     * Circular array whose length is a power of two, indexed by the
+     * unbounded top and bottom indices
+     */
+    private static final class Buffer<Item> {
+
+        private final AtomicReferenceArray<Item> items;
+        private final int mask;
+
+        Buffer(int capacity) {
+            items = new AtomicReferenceArray<>(capacity);
+            mask = capacity - 1;
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        Item get(long i) {
+            return items.get((int) i & mask);
+        }
+
+        // clear a slot only if it still holds the item
+        boolean clear(long i, Item item) {
+            return items.compareAndSet((int) i & mask, item, null);
+        }
+
+        // a plain store, the volatile write of bottom publishes it
+        void put(long i, Item item) {
+            items.setPlain((int) i & mask, item);
+        }
+
+        /**
+         * Move the items to a larger buffer. Every slot holds an index in
+         * [b - capacity, b), so the slots of items taken by thieves which
+         * have not cleared them yet move along with the others.
+         * @param b index after the last item
+         * @return a buffer of twice the capacity holding the same items
+         */
+        Buffer<Item> grow(long b) {
+            Buffer<Item> larger = new Buffer<>(2 * capacity());
+            for (long i = b - capacity(); i < b; i++) {
+                Item item = get(i);
+                if (item != null && items.compareAndSet((int) i & mask, item, null))
+                    larger.put(i, item);
+            }
+            return larger;
+        }
+    }
+
+    /**
+     * See if the deque is empty
+     * @return empty: 1, otherwise: 0
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return the number of items on the deque, approximate while
+     *         other threads change it
+     */
+    public int size() {
+        long t = top.get();
+        long b = bottom;
+        return (int) Math.max(0, b - t);
+    }
+
+    /**
+     * Add the item to the end, only called by the owner thread
+     * @param item input item
+     */
+    public void addLast(Item item) {
+
+        if (item == null)
+            throw new IllegalArgumentException("The item added is null!");
+
+        long b = bottom;
+        long t = top.get();
+        Buffer<Item> a = buffer;
+
+        // a slot a thief has not cleared yet is not written over
+        if (b - t >= a.capacity() || a.get(b) != null) {
+            a = a.grow(b);
+            buffer = a;
+        }
+
+        a.put(b, item);
+        bottom = b + 1;
+    }
+
+    /**
+     * Remove and return the item from the end, only called by the owner thread
+     * @return last item
+     */
+    public Item removeLast() {
+
+        long b = bottom - 1;
+        Buffer<Item> a = buffer;
+
+        // claim the last slot before reading top, so a thief sees the claim
+        bottom = b;
+        long t = top.get();
+
+        if (t > b) {
+            bottom = b + 1;
+            throw new NoSuchElementException("The Deque is empty!");
+        }
+
+        Item item = a.get(b);
+
+        if (t == b) {
+            // the last item, race the thieves for it, the winner clears the slot
+            boolean won = top.compareAndSet(t, t + 1);
+            bottom = b + 1;
+            if (!won)
+                throw new NoSuchElementException("The Deque is empty!");
+
+            a.clear(b, item);
+            return item;
+        }
+
+        a.put(b, null);
+        return item;
+    }
+
+    /**
+     * Remove and return the item from the front, called by any thread
+     * @return first item
+     */
+    public Item removeFirst() {
+
+        while (true) {
+            long t = top.get();
+            long b = bottom;
+
+            if (t >= b)
+                throw new NoSuchElementException("The Deque is empty!");
+
+            Buffer<Item> a = buffer;
+            Item item = a.get(t);
+
+            // the item is being moved to a larger buffer, read it again
+            if (item == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            // another thief or the owner took this item first, try the next one
+            if (top.compareAndSet(t, t + 1)) {
+
+                // the owner moved the slot, clear it in the larger buffer
+                while (!a.clear(t, item)) {
+                    while (buffer == a) {
+                        Thread.onSpinWait();
+                    }
+                    a = buffer;
+                }
+
+                return item;
+            }
+        }
+    }
+}